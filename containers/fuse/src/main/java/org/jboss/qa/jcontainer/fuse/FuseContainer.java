@@ -18,9 +18,6 @@ package org.jboss.qa.jcontainer.fuse;
 import org.jboss.qa.jcontainer.fuse.strategy.command.FuseCommandFactory;
 import org.jboss.qa.jcontainer.fuse.strategy.command.FuseCommandStrategy;
 import org.jboss.qa.jcontainer.karaf.KarafContainer;
-import org.jboss.qa.jcontainer.karaf.utils.CoreUtils;
-
-import java.io.File;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -35,8 +32,8 @@ public class FuseContainer<T extends FuseConfiguration, U extends FuseClient<T>,
 	}
 
 	@Override
-	protected File getLogDirInternal() {
-		return new File(CoreUtils.getSystemProperty(client, "karaf.data", getCommandStrategy().systemProperty()), "log");
+	protected String getSystemPropertyCommand() {
+		return getCommandStrategy().systemProperty();
 	}
 
 	private FuseCommandStrategy getCommandStrategy() {
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.fuse;
+
+import org.jboss.qa.jcontainer.karaf.KarafConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Detects version of Fuse from Karaf libraries of distribution, so it is known before container is started.
+ * Detected versions are cached by installation directory.
+ */
+@Slf4j
+public final class FuseVersion {
+
+	private static final String FUSE_7_KARAF_VERSION_PREFIX = "4";
+	// Karaf 4 (Fuse 7) has versioned main library in lib/boot, Karaf 2 (Fuse 6) has lib/karaf.jar
+	private static final Pattern KARAF_MAIN_JAR = Pattern.compile("org\\.apache\\.karaf\\.main-(.+)\\.jar");
+	private static final Map<String, Integer> CACHE = new ConcurrentHashMap<>();
+
+	private FuseVersion() {
+	}
+
+	/**
+	 * Returns major version of Fuse installed in directory, {@link KarafConfiguration#DEFAULT_FUSE_VERSION} if it is not known.
+	 */
+	public static int detect(File directory) {
+		if (directory == null || !directory.isDirectory()) {
+			return KarafConfiguration.DEFAULT_FUSE_VERSION;
+		}
+		final String path = directory.getAbsolutePath();
+		final Integer cached = CACHE.get(path);
+		if (cached != null) {
+			return cached;
+		}
+		final String karafVersion = getKarafVersion(directory);
+		if (karafVersion == null) {
+			log.debug("Version of Karaf was not found in {}", directory);
+			return KarafConfiguration.DEFAULT_FUSE_VERSION;
+		}
+		final int version = fromKarafVersion(karafVersion);
+		log.debug("Detected version of Fuse in {}: {}", directory, version);
+		CACHE.put(path, version);
+		return version;
+	}
+
+	/**
+	 * Returns major version of Fuse based on version of Karaf.
+	 */
+	public static int fromKarafVersion(String karafVersion) {
+		return karafVersion.trim().startsWith(FUSE_7_KARAF_VERSION_PREFIX) ? 7 : 6;
+	}
+
+	/**
+	 * Returns version of Karaf main library of distribution, NULL if it is not found.
+	 */
+	public static String getKarafVersion(File directory) {
+		final File[] bootLibs = new File(directory, "lib" + File.separator + "boot").listFiles();
+		if (bootLibs != null) {
+			for (File lib : bootLibs) {
+				final Matcher matcher = KARAF_MAIN_JAR.matcher(lib.getName());
+				if (matcher.matches()) {
+					return matcher.group(1);
+				}
+			}
+		}
+		final File karafJar = new File(directory, "lib" + File.separator + "karaf.jar");
+		if (karafJar.isFile()) {
+			try (JarFile jar = new JarFile(karafJar)) {
+				final Manifest manifest = jar.getManifest();
+				if (manifest != null) {
+					return manifest.getMainAttributes().getValue("Bundle-Version");
+				}
+			} catch (IOException e) {
+				log.debug("Manifest of {} was not read: {}", karafJar, e.getMessage());
+			}
+		}
+		return null;
+	}
+}
@@ -17,6 +17,7 @@ package org.jboss.qa.jcontainer.fuse.strategy.command;
 
 import org.jboss.qa.jcontainer.fuse.FuseClient;
 import org.jboss.qa.jcontainer.fuse.FuseConfiguration;
+import org.jboss.qa.jcontainer.fuse.FuseVersion;
 import org.jboss.qa.jcontainer.fuse.strategy.command.impl.Fuse6CommandStrategy;
 import org.jboss.qa.jcontainer.fuse.strategy.command.impl.Fuse7CommandStrategy;
 import org.jboss.qa.jcontainer.karaf.KarafConfiguration;
@@ -29,19 +30,19 @@ public class FuseCommandFactory {
 	@Getter
 	private FuseCommandStrategy strategy;
 
-	private static final String FUSE_7_KARAF_VERSION_PREFIX = "4";
-
 	public FuseCommandFactory(final FuseClient client) {
 		initStrategy(client);
 	}
 
 	private void initStrategy(final FuseClient<FuseConfiguration> client) {
 		int version = client.getConfiguration().getVersion();
+		if (version == KarafConfiguration.DEFAULT_FUSE_VERSION) {
+			version = FuseVersion.detect(client.getConfiguration().getDirectory());
+		}
 		if (version == KarafConfiguration.DEFAULT_FUSE_VERSION) {
 			try {
 				client.execute("version");
-				final String karafVersionResult = client.getCommandResult();
-				version = karafVersionResult.startsWith(FUSE_7_KARAF_VERSION_PREFIX) ? 7 : 6;
+				version = FuseVersion.fromKarafVersion(client.getCommandResult());
 				log.debug("Detected version of Fuse: {}", version);
 			} catch (Exception e) {
 				// we will use the default
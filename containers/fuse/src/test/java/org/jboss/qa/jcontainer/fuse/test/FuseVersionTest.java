@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.fuse.test;
+
+import org.apache.commons.io.FileUtils;
+
+import org.jboss.qa.jcontainer.fuse.FuseVersion;
+import org.jboss.qa.jcontainer.karaf.KarafConfiguration;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+@RunWith(JUnit4.class)
+public class FuseVersionTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void fuse7Test() throws Exception {
+		final File directory = temporaryFolder.newFolder();
+		FileUtils.touch(new File(directory, "lib/boot/org.apache.karaf.main-4.2.0.fuse-000237.jar"));
+		Assert.assertEquals("4.2.0.fuse-000237", FuseVersion.getKarafVersion(directory));
+		Assert.assertEquals(7, FuseVersion.detect(directory));
+	}
+
+	@Test
+	public void fuse6Test() throws Exception {
+		final File directory = temporaryFolder.newFolder();
+		final Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().putValue("Bundle-Version", "2.4.0.redhat-630187");
+		final File karafJar = new File(directory, "lib/karaf.jar");
+		karafJar.getParentFile().mkdirs();
+		new JarOutputStream(new FileOutputStream(karafJar), manifest).close();
+		Assert.assertEquals(6, FuseVersion.detect(directory));
+	}
+
+	@Test
+	public void cachedVersionTest() throws Exception {
+		final File directory = temporaryFolder.newFolder();
+		final File mainJar = new File(directory, "lib/boot/org.apache.karaf.main-4.2.0.jar");
+		FileUtils.touch(mainJar);
+		Assert.assertEquals(7, FuseVersion.detect(directory));
+		mainJar.delete();
+		Assert.assertEquals(7, FuseVersion.detect(directory));
+	}
+
+	@Test
+	public void unknownVersionTest() throws Exception {
+		Assert.assertEquals(KarafConfiguration.DEFAULT_FUSE_VERSION, FuseVersion.detect(temporaryFolder.newFolder()));
+		Assert.assertEquals(KarafConfiguration.DEFAULT_FUSE_VERSION, FuseVersion.detect(null));
+	}
+}
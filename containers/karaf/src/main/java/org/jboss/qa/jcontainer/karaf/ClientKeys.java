@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.karaf;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.sshd.common.config.keys.PublicKeyEntry;
+import org.apache.sshd.common.config.keys.writer.openssh.OpenSSHKeyPairResourceWriter;
+import org.apache.sshd.common.keyprovider.FileKeyPairProvider;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Client keys of SSH connections. Parsed key files are cached by path, time of last modification and size,
+ * so many clients and containers sharing one key file parse it once.
+ */
+@Slf4j
+public final class ClientKeys {
+
+	private static final int RSA_KEY_SIZE = 2048;
+	private static final String EC_CURVE = "secp256r1";
+	private static final Map<String, CachedKeys> CACHE = new ConcurrentHashMap<>();
+	private static KeyPair runKey;
+
+	private ClientKeys() {
+	}
+
+	/**
+	 * Returns key pairs of private key file, empty list if the file can not be read.
+	 *
+	 * @param password passphrase of encrypted key
+	 */
+	public static List<KeyPair> load(File keyFile, final String password) {
+		final String path = keyFile.getAbsolutePath();
+		final long lastModified = keyFile.lastModified();
+		final long length = keyFile.length();
+		final CachedKeys cached = CACHE.get(path);
+		if (cached != null && cached.lastModified == lastModified && cached.length == length) {
+			return cached.keys;
+		}
+		final FileKeyPairProvider provider = new FileKeyPairProvider(keyFile.toPath());
+		provider.setPasswordFinder((context, resourceKey, retryIndex) -> password);
+		final List<KeyPair> keys = new ArrayList<>();
+		try {
+			for (KeyPair keyPair : provider.loadKeys(null)) {
+				keys.add(keyPair);
+			}
+		} catch (RuntimeException e) {
+			log.error("Error loading client key {}: {}", keyFile, e.getMessage());
+			return Collections.emptyList();
+		}
+		final CachedKeys loaded = new CachedKeys(lastModified, length, Collections.unmodifiableList(keys));
+		CACHE.put(path, loaded);
+		return loaded.keys;
+	}
+
+	/**
+	 * Returns EC key pair generated once per JVM, containers can share it instead of generating own keys.
+	 */
+	public static synchronized KeyPair getRunKey() throws GeneralSecurityException {
+		if (runKey == null) {
+			final KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+			generator.initialize(new ECGenParameterSpec(EC_CURVE));
+			runKey = generator.generateKeyPair();
+		}
+		return runKey;
+	}
+
+	public static KeyPair generateRsaKey() throws GeneralSecurityException {
+		final KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+		generator.initialize(RSA_KEY_SIZE);
+		return generator.generateKeyPair();
+	}
+
+	/**
+	 * Writes private key in OpenSSH format, written key is cached, so it is not parsed again.
+	 */
+	public static void write(File keyFile, KeyPair keyPair) throws IOException, GeneralSecurityException {
+		try (OutputStream out = FileUtils.openOutputStream(keyFile)) {
+			OpenSSHKeyPairResourceWriter.INSTANCE.writePrivateKey(keyPair, "jcontainer", null, out);
+		}
+		CACHE.put(keyFile.getAbsolutePath(), new CachedKeys(keyFile.lastModified(), keyFile.length(), Collections.singletonList(keyPair)));
+	}
+
+	/**
+	 * Returns public key encoded as value of Karaf keys.properties (Base64 encoded SSH public key).
+	 */
+	public static String toKarafEntry(PublicKey publicKey) {
+		return PublicKeyEntry.toString(publicKey).split(" ")[1];
+	}
+
+	private static final class CachedKeys {
+		private final long lastModified;
+		private final long length;
+		private final List<KeyPair> keys;
+
+		private CachedKeys(long lastModified, long length, List<KeyPair> keys) {
+			this.lastModified = lastModified;
+			this.length = length;
+			this.keys = keys;
+		}
+	}
+}
@@ -15,21 +15,14 @@
  */
 package org.jboss.qa.jcontainer.karaf;
 
-import org.apache.sshd.agent.SshAgent;
-import org.apache.sshd.agent.local.AgentImpl;
-import org.apache.sshd.agent.local.LocalAgentFactory;
-import org.apache.sshd.client.ClientBuilder;
-import org.apache.sshd.client.SshClient;
 import org.apache.sshd.client.channel.ClientChannel;
 import org.apache.sshd.client.channel.ClientChannelEvent;
-import org.apache.sshd.client.future.ConnectFuture;
 import org.apache.sshd.client.session.ClientSession;
-import org.apache.sshd.common.RuntimeSshException;
-import org.apache.sshd.common.config.keys.FilePasswordProvider;
-import org.apache.sshd.common.keyprovider.FileKeyPairProvider;
-import org.apache.sshd.core.CoreModuleProperties;
+import org.apache.sshd.common.channel.ChannelPipedInputStream;
 
 import org.jboss.qa.jcontainer.Client;
+import org.jboss.qa.jcontainer.util.LatencyHistogram;
+import org.jboss.qa.jcontainer.util.LineOutputStream;
 
 import org.fusesource.jansi.AnsiConsole;
 
@@ -39,35 +32,52 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.nio.file.Paths;
-import java.security.KeyPair;
-import java.time.Duration;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class KarafClient<T extends KarafConfiguration> extends Client<T> {
 
+	private static final int BUFFER_SIZE = 8192;
+
 	protected ClientSession session;
-	protected SshClient client;
 	private String commandResult;
+	private KarafShell shell;
+	private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+
+	static {
+		AnsiConsole.systemInstall();
+	}
 
 	public KarafClient(T configuration) {
 		super(configuration);
 	}
 	@Override
 	protected void closeInternal() throws IOException {
+		if (shell != null) {
+			shell.close();
+			shell = null;
+		}
 		if (session != null) {
-			session.close(true);
+			configuration.getSessionPool().release(session);
 		}
 		session = null;
-		if (client != null) {
-			client.stop();
-		}
-		client = null;
 	}
 
 	@Override
@@ -78,23 +88,36 @@ public class KarafClient<T extends KarafConfiguration> extends Client<T> {
 	@Override
 	protected void connectInternal() throws Exception {
 		log.info("Connecting to server {}:{}", configuration.getHost(), configuration.getSshPort());
-		client = ClientBuilder.builder().build();
-		setupAgent(configuration.getUsername(), configuration.getKeyFile() != null ? configuration.getKeyFile().getAbsolutePath().toString() : null,
-				client, (session, resourceKey, retryIndex) -> configuration.getPassword());
-		CoreModuleProperties.HEARTBEAT_INTERVAL.set(client, Duration.ofMillis(60000));
-		CoreModuleProperties.IDLE_TIMEOUT.set(client, Duration.ofMillis(1800000L));
-		CoreModuleProperties.NIO2_READ_TIMEOUT.set(client, Duration.ofMillis(1800000L));
-		client.start();
-		connect(client);
-		if (configuration.getPassword() != null) {
-			session.addPasswordIdentity(configuration.getPassword());
-		}
-		session.auth().verify();
+		session = configuration.getSessionPool().acquire(configuration.getHost(), configuration.getSshPort(),
+				configuration.getUsername(), configuration.getPassword(), configuration.getKeyFile());
 	}
 
 	@Override
 	protected void executeInternal(String command) throws Exception {
+		if (configuration.isPersistentShell()) {
+			executeInShell(Arrays.asList(command.split("\\r?\\n")));
+			return;
+		}
+		executeInChannel(command, configuration.getCommandTimeout());
+	}
+
+	/**
+	 * Same as {@link #execute(String, Consumer)}, but with given deadline instead of configured command timeout.
+	 *
+	 * @param timeout deadline of command
+	 * @param lineCallback receives lines of output as they arrive
+	 */
+	public void execute(String command, long timeout, TimeUnit unit, Consumer<String> lineCallback) throws Exception {
+		log.info("Execute command: {}", command);
+		if (!isConnected()) {
+			connect();
+		}
+		executeStreaming(command, unit.toMillis(timeout), lineCallback);
+	}
+
+	private void executeInChannel(String command, long timeout) throws Exception {
 		commandResult = null; // executing new command, reset previous result
+		final long start = System.currentTimeMillis();
 		final ClientChannel channel = session.createChannel("exec", command.concat(System.getProperty("line.separator")));
 		try (
 				InputStream in = new ByteArrayInputStream(new byte[0]);
@@ -102,12 +125,19 @@ public class KarafClient<T extends KarafConfiguration> extends Client<T> {
 				ByteArrayOutputStream err = new ByteArrayOutputStream()
 		) {
 			channel.setIn(in);
-			AnsiConsole.systemInstall();
 			channel.setOut(out);
 			channel.setErr(err);
 
-			channel.open();
-			channel.waitFor(Arrays.asList(ClientChannelEvent.STDOUT_DATA, ClientChannelEvent.STDERR_DATA), 10000L);
+			channel.open().verify(timeout);
+			// Exit status may come before the last output, which is complete on EOF
+			Set<ClientChannelEvent> events = channel.waitFor(EnumSet.of(ClientChannelEvent.CLOSED, ClientChannelEvent.EXIT_STATUS), timeout);
+			if (!events.contains(ClientChannelEvent.CLOSED) && !events.contains(ClientChannelEvent.TIMEOUT)) {
+				events = channel.waitFor(EnumSet.of(ClientChannelEvent.CLOSED, ClientChannelEvent.EOF),
+						Math.max(1, start + timeout - System.currentTimeMillis()));
+			}
+			if (events.contains(ClientChannelEvent.TIMEOUT)) {
+				throw timeoutException(command, timeout);
+			}
 
 			out.writeTo(System.out);
 			err.writeTo(System.err);
@@ -121,11 +151,98 @@ public class KarafClient<T extends KarafConfiguration> extends Client<T> {
 			}
 		} finally {
 			channel.close(true);
+			recordLatency(command, System.currentTimeMillis() - start);
 		}
 	}
 
+	/**
+	 * Output is read from the channel by the calling thread, so the remote window is not extended until
+	 * consumer accepts the lines. Commands are executed in their own channel also in persistent shell mode.
+	 */
+	@Override
+	protected void executeInternal(String command, Consumer<String> lineConsumer) throws Exception {
+		executeStreaming(command, configuration.getCommandTimeout(), lineConsumer);
+	}
+
+	private void executeStreaming(String command, long timeout, Consumer<String> lineConsumer) throws Exception {
+		commandResult = null;
+		final long start = System.currentTimeMillis();
+		final ClientChannel channel = session.createChannel("exec", command.concat(System.getProperty("line.separator")));
+		try (
+				InputStream in = new ByteArrayInputStream(new byte[0]);
+				ByteArrayOutputStream err = new ByteArrayOutputStream();
+				LineOutputStream lines = LineOutputStream.of(Charset.defaultCharset(), lineConsumer)
+		) {
+			channel.setIn(in);
+			channel.setErr(err);
+			// No output stream is set, so the output is available as piped input stream
+			channel.open().verify(timeout);
+			final ChannelPipedInputStream out = (ChannelPipedInputStream) channel.getInvertedOut();
+			final byte[] buffer = new byte[BUFFER_SIZE];
+			int read;
+			do {
+				final long remaining = start + timeout - System.currentTimeMillis();
+				if (remaining <= 0) {
+					throw timeoutException(command, timeout);
+				}
+				out.setTimeout(remaining);
+				try {
+					read = out.read(buffer);
+				} catch (SocketException e) {
+					// Piped stream reports exceeded timeout as socket exception
+					if (System.currentTimeMillis() - start >= timeout) {
+						throw timeoutException(command, timeout);
+					}
+					throw e;
+				}
+				if (read > 0) {
+					lines.write(buffer, 0, read);
+				}
+			} while (read >= 0);
+			lines.close();
+
+			final Set<ClientChannelEvent> events = channel.waitFor(EnumSet.of(ClientChannelEvent.CLOSED, ClientChannelEvent.EXIT_STATUS),
+					Math.max(1, start + timeout - System.currentTimeMillis()));
+			if (events.contains(ClientChannelEvent.TIMEOUT)) {
+				throw timeoutException(command, timeout);
+			}
+			if (channel.getExitStatus() != null && channel.getExitStatus() != 0) {
+				log.error(err.toString());
+				throw new IllegalArgumentException(String.format("Operation '%s' failed", command));
+			}
+		} finally {
+			channel.close(true);
+			recordLatency(command, System.currentTimeMillis() - start);
+		}
+	}
+
+	private static TimeoutException timeoutException(String command, long timeout) {
+		return new TimeoutException(String.format("Operation '%s' did not finish in %d ms", command, timeout));
+	}
+
+	private void recordLatency(String command, long millis) {
+		final String name = command.trim().split("\\s+", 2)[0];
+		LatencyHistogram histogram = latencies.get(name);
+		if (histogram == null) {
+			latencies.putIfAbsent(name, new LatencyHistogram());
+			histogram = latencies.get(name);
+		}
+		histogram.record(millis);
+	}
+
+	/**
+	 * Returns latencies of executed commands by command name, e.g. "feature:install".
+	 */
+	public Map<String, LatencyHistogram> getLatencies() {
+		return Collections.unmodifiableMap(latencies);
+	}
+
 	@Override
 	protected void executeInternal(List<String> commands) throws Exception {
+		if (configuration.isPersistentShell()) {
+			executeInShell(commands);
+			return;
+		}
 		final StringWriter sw = new StringWriter();
 		final PrintWriter pw = new PrintWriter(sw, true);
 		for (String cmd : commands) {
@@ -138,46 +255,68 @@ public class KarafClient<T extends KarafConfiguration> extends Client<T> {
 		executeInternal(sw.toString());
 	}
 
-	private void setupAgent(String user, String keyFile, SshClient client, FilePasswordProvider passwordProvider) {
-		final SshAgent agent = startAgent(user, keyFile, passwordProvider);
-		client.setAgentFactory(new LocalAgentFactory(agent));
-		client.getProperties().put(SshAgent.SSH_AUTHSOCKET_ENV_NAME, "local");
-	}
-
-	private SshAgent startAgent(String user, String keyFile, FilePasswordProvider passwordProvider) {
-		try {
-			final SshAgent agent = new AgentImpl();
-			if (keyFile != null) {
-				final FileKeyPairProvider fileKeyPairProvider = new FileKeyPairProvider(Paths.get(keyFile));
-				fileKeyPairProvider.setPasswordFinder(passwordProvider);
-				for (KeyPair key : fileKeyPairProvider.loadKeys(null)) {
-					agent.addIdentity(key, user);
-				}
+	/**
+	 * Pipelines all commands into the shell and waits for all of them. Every command has its own deadline, which starts
+	 * when the previous command is completed. Shell is closed on timeout, because its output would be out of sync.
+	 */
+	private void executeInShell(List<String> commands) throws Exception {
+		commandResult = null;
+		final long timeout = configuration.getCommandTimeout();
+		final List<String> texts = new ArrayList<>();
+		final List<CompletableFuture<String>> results = new ArrayList<>();
+		// Commands are completed in order, pipelined command waits for the previous one, so its latency starts then
+		final AtomicLong previousCompleted = new AtomicLong();
+		for (String cmd : commands) {
+			final String command = cmd.trim();
+			if (!command.isEmpty() && !command.startsWith("#")) {
+				final long submitted = System.currentTimeMillis();
+				texts.add(command);
+				results.add(getShell().execute(command).whenComplete((r, e) -> {
+					final long completed = System.currentTimeMillis();
+					recordLatency(command, completed - Math.max(submitted, previousCompleted.getAndSet(completed)));
+				}));
 			}
-			return agent;
-		} catch (Throwable e) {
-			log.error("Error starting ssh agent for: " + e.getMessage());
-			return null;
 		}
-	}
-
-	protected void connect(SshClient client) throws IOException, InterruptedException {
-		int attempts = 10;
-		do {
-			final ConnectFuture future = client.connect(configuration.getUsername(), configuration.getHost(),
-					configuration.getSshPort());
-			future.await();
+		final StringBuilder output = new StringBuilder();
+		Exception failure = null;
+		long previous = System.currentTimeMillis();
+		for (int i = 0; i < results.size(); i++) {
 			try {
-				session = future.getSession();
-			} catch (RuntimeSshException ex) {
-				if (--attempts > 0) {
-					Thread.sleep(TimeUnit.SECONDS.toMillis(2));
-					log.info("Waiting for SSH connection...");
-				} else {
-					throw ex;
+				output.append(results.get(i).get(Math.max(1, previous + timeout - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+			} catch (ExecutionException e) {
+				if (failure == null) {
+					failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
 				}
+			} catch (TimeoutException e) {
+				closeShell();
+				commandResult = output.toString();
+				System.out.print(commandResult);
+				throw timeoutException(texts.get(i), timeout);
 			}
-		} while (session == null);
+			previous = System.currentTimeMillis();
+		}
+		commandResult = output.toString();
+		System.out.print(commandResult);
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Returns persistent shell of client, it is opened on the first use.
+	 */
+	public synchronized KarafShell getShell() throws IOException {
+		if (shell == null || !shell.isOpen()) {
+			shell = new KarafShell(session);
+		}
+		return shell;
+	}
+
+	private synchronized void closeShell() throws IOException {
+		if (shell != null) {
+			shell.close();
+			shell = null;
+		}
 	}
 
 	public String getCommandResult() {
@@ -18,10 +18,14 @@ package org.jboss.qa.jcontainer.karaf;
 import org.apache.commons.lang3.SystemUtils;
 
 import org.jboss.qa.jcontainer.JavaConfiguration;
+import org.jboss.qa.jcontainer.util.DirectoryCloner;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import lombok.Getter;
 
@@ -31,18 +35,35 @@ public class KarafConfiguration extends JavaConfiguration {
 
 	public static final int DEFAULT_HTTP_PORT = 8181;
 	public static final int DEFAULT_SSH_PORT = 8101;
+	public static final int DEFAULT_RMI_REGISTRY_PORT = 1099;
+	public static final int DEFAULT_RMI_SERVER_PORT = 44444;
 	public static final int DEFAULT_FUSE_VERSION = -1;
+	public static final long DEFAULT_COMMAND_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+	// Binaries, libraries and system repository are linked
+	private static final List<String> CLONED_DIRS = Arrays.asList("etc", "data", "deploy", "instances");
 
 	@Getter
 	protected final int httpPort;
 	@Getter
 	protected final int sshPort;
 	@Getter
+	protected final int rmiRegistryPort;
+	@Getter
+	protected final int rmiServerPort;
+	@Getter
 	protected File keyFile;
 	protected final File script;
 	protected final File stopScript;
 	@Getter
 	protected final int version;
+	@Getter
+	protected final boolean persistentShell;
+	@Getter
+	protected final long commandTimeout;
+	@Getter
+	protected final SshSessionPool sessionPool;
+	@Getter
+	protected final boolean sharedClientKey;
 
 	protected KarafConfiguration(Builder<?> builder) {
 		super(builder);
@@ -50,9 +71,15 @@ public class KarafConfiguration extends JavaConfiguration {
 		stopScript = builder.stopScript;
 		httpPort = builder.httpPort;
 		sshPort = builder.sshPort;
+		rmiRegistryPort = builder.rmiRegistryPort;
+		rmiServerPort = builder.rmiServerPort;
 		//Optional
 		keyFile = builder.keyFile;
 		version = builder.version;
+		persistentShell = builder.persistentShell;
+		commandTimeout = builder.commandTimeout;
+		sessionPool = builder.sessionPool;
+		sharedClientKey = builder.sharedClientKey;
 	}
 
 	public static Builder<?> builder() {
@@ -97,19 +124,30 @@ public class KarafConfiguration extends JavaConfiguration {
 	public abstract static class Builder<T extends Builder<T>> extends JavaConfiguration.Builder<T> {
 		protected int httpPort;
 		protected int sshPort;
+		protected int rmiRegistryPort;
+		protected int rmiServerPort;
 		protected File keyFile;
 		protected File script;
 		protected File stopScript;
 		protected int version;
+		protected File cloneDirectory;
+		protected boolean persistentShell;
+		protected long commandTimeout;
+		protected SshSessionPool sessionPool;
+		protected boolean sharedClientKey;
 
 		public Builder() {
 			super();
 			httpPort(DEFAULT_HTTP_PORT);
 			sshPort(DEFAULT_SSH_PORT);
+			rmiRegistryPort(DEFAULT_RMI_REGISTRY_PORT);
+			rmiServerPort(DEFAULT_RMI_SERVER_PORT);
 			username("karaf");
 			password("karaf");
 			logFileName("karaf.log");
 			version(DEFAULT_FUSE_VERSION);
+			commandTimeout(DEFAULT_COMMAND_TIMEOUT);
+			sessionPool(SshSessionPool.getDefault());
 			//needed in jdk17
 			if (!JavaConfiguration.BEFORE_JDK17) {
 				javaOpt("--add-opens java.base/java.lang=ALL-UNNAMED");
@@ -131,6 +169,19 @@ public class KarafConfiguration extends JavaConfiguration {
 			return self();
 		}
 
+		/**
+		 * Ports of JMX connector, see etc/org.apache.karaf.management.cfg.
+		 */
+		public T rmiRegistryPort(int rmiRegistryPort) {
+			this.rmiRegistryPort = rmiRegistryPort;
+			return self();
+		}
+
+		public T rmiServerPort(int rmiServerPort) {
+			this.rmiServerPort = rmiServerPort;
+			return self();
+		}
+
 		public T keyFile(String keyFile) {
 			this.keyFile = new File(keyFile);
 			return self();
@@ -141,7 +192,60 @@ public class KarafConfiguration extends JavaConfiguration {
 			return self();
 		}
 
+		/**
+		 * Default deadline of client command in milliseconds.
+		 */
+		public T commandTimeout(long commandTimeout) {
+			this.commandTimeout = commandTimeout;
+			return self();
+		}
+
+		/**
+		 * Generated client key is one EC key shared by all containers in JVM instead of RSA key per container,
+		 * see {@link KarafContainer#setupClientKeys()}.
+		 */
+		public T sharedClientKey() {
+			this.sharedClientKey = true;
+			return self();
+		}
+
+		/**
+		 * SSH sessions are shared by all clients of the pool, default pool is shared within JVM.
+		 */
+		public T sessionPool(SshSessionPool sessionPool) {
+			this.sessionPool = sessionPool;
+			return self();
+		}
+
+		/**
+		 * Client executes commands in one persistent shell channel, see {@link KarafShell}, instead of channel per command.
+		 */
+		public T persistentShell() {
+			this.persistentShell = true;
+			return self();
+		}
+
+		/**
+		 * Distribution is cloned into given directory when configuration is built, see {@link DirectoryCloner}.
+		 * Several instances can run from one distribution this way.
+		 */
+		public T cloneDirectory(File cloneDirectory) {
+			this.cloneDirectory = cloneDirectory;
+			return self();
+		}
+
 		public KarafConfiguration build() {
+			if (cloneDirectory != null) {
+				DirectoryCloner.clone(directory, cloneDirectory, CLONED_DIRS, Collections.<String>emptyList());
+				directory = cloneDirectory;
+				cloneDirectory = null;
+			}
+			if (allocatePortLease(DEFAULT_SSH_PORT, DEFAULT_HTTP_PORT, DEFAULT_RMI_REGISTRY_PORT, DEFAULT_RMI_SERVER_PORT) != null) {
+				sshPort(DEFAULT_SSH_PORT + portLease.getOffset());
+				httpPort(DEFAULT_HTTP_PORT + portLease.getOffset());
+				rmiRegistryPort(DEFAULT_RMI_REGISTRY_PORT + portLease.getOffset());
+				rmiServerPort(DEFAULT_RMI_SERVER_PORT + portLease.getOffset());
+			}
 			script = new File(directory, "bin/" + (SystemUtils.IS_OS_WINDOWS ? "start.bat" : "start"));
 			stopScript = new File(directory, "bin/" + (SystemUtils.IS_OS_WINDOWS ? "stop.bat" : "stop"));
 			return new KarafConfiguration(this);
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.karaf;
+
+import org.apache.sshd.client.channel.ChannelShell;
+import org.apache.sshd.client.session.ClientSession;
+
+import org.jboss.qa.jcontainer.util.LineOutputStream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * One interactive shell channel, which executes many commands. Every command is followed by echo of unique marker, so
+ * the command is completed as soon as the marker arrives. Commands are pipelined, they are written to the shell without
+ * waiting for output of previous ones. Shell has no exit status, failure is detected from error output of Karaf.
+ */
+@Slf4j
+public class KarafShell implements Closeable {
+
+	private static final long OPEN_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+	private static final Pattern ANSI_ESCAPE = Pattern.compile("\u001B\\[[0-9;?]*[A-Za-z]|\r");
+	private static final Pattern ERROR_OUTPUT = Pattern.compile("^(Error executing command|Command not found)", Pattern.MULTILINE);
+
+	private final String marker = "JCONTAINER-" + UUID.randomUUID().toString().substring(0, 8);
+	private final Queue<Command> commands = new ArrayDeque<>();
+	private final ChannelShell channel;
+	private long sequence;
+	private boolean closed;
+
+	public KarafShell(ClientSession session) throws IOException {
+		channel = session.createShellChannel();
+		// Without pseudo terminal there is no line editing, colors and paging of long outputs
+		channel.setUsePty(false);
+		final OutputStream out = new ShellOutput();
+		channel.setOut(out);
+		channel.setErr(out);
+		channel.open().verify(OPEN_TIMEOUT);
+		channel.addCloseFutureListener(future -> failAll(new IllegalStateException("Shell channel was closed")));
+	}
+
+	/**
+	 * Writes command to the shell, returned future is completed by output of command.
+	 */
+	public CompletableFuture<String> execute(String command) {
+		final Command cmd;
+		synchronized (this) {
+			if (closed) {
+				final CompletableFuture<String> failed = new CompletableFuture<>();
+				failed.completeExceptionally(new IllegalStateException("Shell channel was closed"));
+				return failed;
+			}
+			cmd = new Command(command, sequence++);
+			commands.add(cmd);
+			try {
+				final OutputStream in = channel.getInvertedIn();
+				in.write(String.format("%s%necho \"%s\" %d%n", command, marker, cmd.sequence).getBytes(StandardCharsets.UTF_8));
+				in.flush();
+			} catch (IOException e) {
+				commands.remove(cmd);
+				cmd.result.completeExceptionally(e);
+			}
+		}
+		return cmd.result;
+	}
+
+	public boolean isOpen() {
+		return channel.isOpen();
+	}
+
+	@Override
+	public void close() throws IOException {
+		failAll(new IllegalStateException("Shell channel was closed"));
+		channel.close(false);
+	}
+
+	private synchronized void failAll(Exception e) {
+		closed = true;
+		for (Command command : commands) {
+			command.result.completeExceptionally(e);
+		}
+		commands.clear();
+	}
+
+	private synchronized void processLine(String line) {
+		final Command command = commands.peek();
+		if (command == null) {
+			return;
+		}
+		if (line.contains(marker + " " + command.sequence)) {
+			commands.poll();
+			command.complete();
+		} else if (!line.contains(marker) && !command.isEcho(line)) {
+			command.output.append(line).append(System.lineSeparator());
+		}
+	}
+
+	private static final class Command {
+		private final String text;
+		private final long sequence;
+		private final StringBuilder output = new StringBuilder();
+		private final CompletableFuture<String> result = new CompletableFuture<>();
+		private boolean echoed;
+
+		Command(String text, long sequence) {
+			this.text = text.trim();
+			this.sequence = sequence;
+		}
+
+		/**
+		 * Checks if line is echo of command input (possibly after prompt), only the first one is skipped.
+		 */
+		boolean isEcho(String line) {
+			if (!echoed && output.length() == 0 && (line.trim().equals(text) || line.endsWith("> " + text))) {
+				echoed = true;
+				return true;
+			}
+			return false;
+		}
+
+		void complete() {
+			final String out = output.toString();
+			if (ERROR_OUTPUT.matcher(out).find()) {
+				log.error(out);
+				result.completeExceptionally(new IllegalArgumentException(String.format("Operation '%s' failed", text)));
+			} else {
+				result.complete(out);
+			}
+		}
+	}
+
+	private class ShellOutput extends LineOutputStream {
+
+		ShellOutput() {
+			super(StandardCharsets.UTF_8);
+		}
+
+		@Override
+		protected void onLine(String line) {
+			processLine(ANSI_ESCAPE.matcher(line).replaceAll(""));
+		}
+	}
+}
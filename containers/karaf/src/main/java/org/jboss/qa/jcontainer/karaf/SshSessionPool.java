@@ -0,0 +1,258 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.karaf;
+
+import org.apache.sshd.client.ClientBuilder;
+import org.apache.sshd.client.SshClient;
+import org.apache.sshd.client.session.ClientSession;
+import org.apache.sshd.common.RuntimeSshException;
+import org.apache.sshd.core.CoreModuleProperties;
+
+import org.jboss.qa.jcontainer.util.executor.SharedExecutor;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.security.KeyPair;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Authenticated sessions of one shared {@link SshClient}. Sessions are keyed by host, port, user and credentials.
+ * Released session is reused if it is still open, sessions idle longer than idle timeout are closed.
+ */
+@Slf4j
+public class SshSessionPool implements Closeable {
+
+	public static final long DEFAULT_IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+	private static final long CONNECT_TIMEOUT = TimeUnit.SECONDS.toMillis(20);
+	private static final long MIN_RETRY_DELAY = 100L;
+	private static final long MAX_RETRY_DELAY = TimeUnit.SECONDS.toMillis(2);
+	private static final SshSessionPool DEFAULT = new SshSessionPool(DEFAULT_IDLE_TIMEOUT);
+
+	private final long idleTimeout;
+	private final Map<List<Object>, Deque<IdleSession>> idle = new HashMap<>();
+	private final Map<ClientSession, List<Object>> leased = new HashMap<>();
+	private SshClient client;
+	private ScheduledFuture<?> eviction;
+	private boolean closed;
+	private long created;
+	private long reused;
+	private long evicted;
+
+	public SshSessionPool(long idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * Returns pool shared by all clients which do not configure their own one.
+	 */
+	public static SshSessionPool getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Returns open and authenticated session, connection is retried with growing delay until the server is available.
+	 *
+	 * @param keyFile private key, NULL if only password is used
+	 */
+	public ClientSession acquire(String host, int port, String username, String password, File keyFile)
+			throws IOException, InterruptedException {
+		final List<Object> key = Arrays.<Object>asList(host, port, username, password, keyFile == null ? null : keyFile.getAbsolutePath());
+		final SshClient sshClient;
+		synchronized (this) {
+			if (closed) {
+				throw new IllegalStateException("Session pool is closed");
+			}
+			final Deque<IdleSession> sessions = idle.get(key);
+			while (sessions != null && !sessions.isEmpty()) {
+				final ClientSession session = sessions.pollFirst().session;
+				if (isHealthy(session)) {
+					leased.put(session, key);
+					reused++;
+					return session;
+				}
+				session.close(true);
+			}
+			sshClient = getClient();
+		}
+		final ClientSession session = connect(sshClient, host, port, username);
+		try {
+			if (password != null) {
+				session.addPasswordIdentity(password);
+			}
+			if (keyFile != null) {
+				for (KeyPair keyPair : ClientKeys.load(keyFile, password)) {
+					session.addPublicKeyIdentity(keyPair);
+				}
+			}
+			session.auth().verify(CONNECT_TIMEOUT);
+		} catch (IOException | RuntimeException e) {
+			session.close(true);
+			throw e;
+		}
+		synchronized (this) {
+			leased.put(session, key);
+			created++;
+		}
+		return session;
+	}
+
+	/**
+	 * Returns session to the pool, session which is not open any more is discarded.
+	 */
+	public synchronized void release(ClientSession session) {
+		final List<Object> key = leased.remove(session);
+		if (key == null || closed || !isHealthy(session)) {
+			session.close(true);
+			return;
+		}
+		Deque<IdleSession> sessions = idle.get(key);
+		if (sessions == null) {
+			sessions = new ArrayDeque<>();
+			idle.put(key, sessions);
+		}
+		// Most recently used session is reused first, so the others can expire
+		sessions.addFirst(new IdleSession(session, System.currentTimeMillis()));
+		if (eviction == null) {
+			eviction = SharedExecutor.schedule(this::evictIdle, idleTimeout, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	public synchronized int getOpenSessions() {
+		return getIdleSessions() + leased.size();
+	}
+
+	public synchronized int getIdleSessions() {
+		int count = 0;
+		for (Deque<IdleSession> sessions : idle.values()) {
+			count += sessions.size();
+		}
+		return count;
+	}
+
+	public synchronized long getCreatedSessions() {
+		return created;
+	}
+
+	public synchronized long getReusedSessions() {
+		return reused;
+	}
+
+	public synchronized long getEvictedSessions() {
+		return evicted;
+	}
+
+	/**
+	 * Closes idle sessions and stops SSH client, leased sessions are closed when they are released.
+	 */
+	@Override
+	public synchronized void close() {
+		closed = true;
+		if (eviction != null) {
+			eviction.cancel(false);
+			eviction = null;
+		}
+		for (Deque<IdleSession> sessions : idle.values()) {
+			for (IdleSession idleSession : sessions) {
+				idleSession.session.close(true);
+			}
+		}
+		idle.clear();
+		if (client != null && leased.isEmpty()) {
+			client.stop();
+			client = null;
+		}
+	}
+
+	private synchronized void evictIdle() {
+		eviction = null;
+		final long now = System.currentTimeMillis();
+		long nextEviction = Long.MAX_VALUE;
+		for (Iterator<Deque<IdleSession>> it = idle.values().iterator(); it.hasNext(); ) {
+			final Deque<IdleSession> sessions = it.next();
+			for (Iterator<IdleSession> sessionIt = sessions.iterator(); sessionIt.hasNext(); ) {
+				final IdleSession idleSession = sessionIt.next();
+				if (now - idleSession.since >= idleTimeout || !isHealthy(idleSession.session)) {
+					sessionIt.remove();
+					idleSession.session.close(true);
+					evicted++;
+				} else {
+					nextEviction = Math.min(nextEviction, idleSession.since + idleTimeout);
+				}
+			}
+			if (sessions.isEmpty()) {
+				it.remove();
+			}
+		}
+		if (nextEviction != Long.MAX_VALUE && !closed) {
+			eviction = SharedExecutor.schedule(this::evictIdle, nextEviction - now, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private SshClient getClient() {
+		if (client == null) {
+			client = ClientBuilder.builder().build();
+			CoreModuleProperties.HEARTBEAT_INTERVAL.set(client, Duration.ofMillis(60000));
+			CoreModuleProperties.IDLE_TIMEOUT.set(client, Duration.ofMillis(1800000L));
+			CoreModuleProperties.NIO2_READ_TIMEOUT.set(client, Duration.ofMillis(1800000L));
+			client.start();
+		}
+		return client;
+	}
+
+	private static boolean isHealthy(ClientSession session) {
+		return session.isOpen() && !session.isClosing() && session.isAuthenticated();
+	}
+
+	private static ClientSession connect(SshClient client, String host, int port, String username)
+			throws IOException, InterruptedException {
+		final long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+		long delay = MIN_RETRY_DELAY;
+		while (true) {
+			try {
+				return client.connect(username, host, port).verify(Math.max(1, deadline - System.currentTimeMillis())).getSession();
+			} catch (IOException | RuntimeSshException e) {
+				if (System.currentTimeMillis() + delay >= deadline) {
+					throw e;
+				}
+				log.info("Waiting for SSH connection...");
+				Thread.sleep(delay);
+				delay = Math.min(delay * 2, MAX_RETRY_DELAY);
+			}
+		}
+	}
+
+	private static final class IdleSession {
+		private final ClientSession session;
+		private final long since;
+
+		private IdleSession(ClientSession session, long since) {
+			this.session = session;
+			this.since = since;
+		}
+	}
+}
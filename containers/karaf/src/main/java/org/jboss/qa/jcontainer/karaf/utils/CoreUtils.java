@@ -17,11 +17,17 @@ package org.jboss.qa.jcontainer.karaf.utils;
 
 import org.jboss.qa.jcontainer.karaf.KarafClient;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public final class CoreUtils {
 
+	private static final Pattern ANSI_CODES = Pattern.compile("\u001B\\[[;\\d]*m");
+
 	public static String getSystemProperty(KarafClient client, String propertyName) {
 		return getSystemProperty(client, propertyName, "system:property");
 	}
@@ -29,7 +35,7 @@ public final class CoreUtils {
 	public static String getSystemProperty(KarafClient client, String propertyName, String command) {
 		try {
 			client.execute(String.format("%s %s", command, propertyName));
-			final String property = client.getCommandResult().replaceAll("\u001B\\[[;\\d]*m", "");
+			final String property = ANSI_CODES.matcher(client.getCommandResult()).replaceAll("");
 			return property.trim();
 		} catch (Exception e) {
 			log.error(e.getMessage(), e);
@@ -37,6 +43,21 @@ public final class CoreUtils {
 		}
 	}
 
+	/**
+	 * Returns all system properties, command without property name lists them as "name=value" lines.
+	 */
+	public static Map<String, String> getSystemProperties(KarafClient<?> client, String command) throws Exception {
+		final Map<String, String> properties = new HashMap<>();
+		client.execute(command, line -> {
+			final String property = ANSI_CODES.matcher(line).replaceAll("");
+			final int separator = property.indexOf('=');
+			if (separator > 0) {
+				properties.put(property.substring(0, separator).trim(), property.substring(separator + 1).trim());
+			}
+		});
+		return properties;
+	}
+
 	private CoreUtils() {
 	}
 }
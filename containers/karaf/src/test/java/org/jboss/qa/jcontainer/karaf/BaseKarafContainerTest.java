@@ -117,6 +117,14 @@ public class BaseKarafContainerTest extends KarafContainerTest {
 		}
 	}
 
+	@Test
+	public void streamedOutputTest() throws Exception {
+		final KarafClient<?> client = (KarafClient<?>) container.getClient();
+		final List<String> lines = new ArrayList<>();
+		client.execute("bundle:list -t 0", lines::add);
+		Assert.assertTrue(lines.size() > 1);
+	}
+
 	@Test
 	public void executeFileTest() throws Exception {
 		container.getClient().execute(new File("src/test/resources/commands.cli"));
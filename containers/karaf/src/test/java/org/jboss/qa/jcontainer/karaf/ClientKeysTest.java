@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.karaf;
+
+import static org.apache.commons.io.FileUtils.copyFile;
+import static org.apache.commons.io.FileUtils.readFileToString;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.security.KeyPair;
+import java.util.List;
+
+public class ClientKeysTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void writtenKeyIsLoaded() throws Exception {
+		final File keyFile = temporaryFolder.newFile();
+		ClientKeys.write(keyFile, ClientKeys.getRunKey());
+		Assert.assertSame(ClientKeys.getRunKey(), ClientKeys.load(keyFile, null).get(0));
+
+		final File copy = new File(temporaryFolder.getRoot(), "copy.key");
+		copyFile(keyFile, copy);
+		final List<KeyPair> keys = ClientKeys.load(copy, null);
+		Assert.assertEquals(ClientKeys.getRunKey().getPublic(), keys.get(0).getPublic());
+		Assert.assertSame(keys, ClientKeys.load(copy, null));
+	}
+
+	@Test
+	public void modifiedKeyIsReloaded() throws Exception {
+		final File keyFile = temporaryFolder.newFile();
+		ClientKeys.write(keyFile, ClientKeys.getRunKey());
+		final KeyPair rsaKey = ClientKeys.generateRsaKey();
+		ClientKeys.write(new File(temporaryFolder.getRoot(), "rsa.key"), rsaKey);
+		copyFile(new File(temporaryFolder.getRoot(), "rsa.key"), keyFile);
+		Assert.assertEquals(rsaKey.getPublic(), ClientKeys.load(keyFile, null).get(0).getPublic());
+	}
+
+	@Test
+	public void sharedKeyIsConfigured() throws Exception {
+		final File directory = temporaryFolder.newFolder();
+		final KarafContainer<?, ?, ?> container = new KarafContainer<>(
+				KarafConfiguration.builder().directory(directory.getAbsolutePath()).sharedClientKey().build());
+		container.setupClientKeys();
+
+		final File keyFile = new File(directory, "etc/client.key");
+		Assert.assertEquals(ClientKeys.getRunKey().getPublic(), ClientKeys.load(keyFile, null).get(0).getPublic());
+		final String entry = ClientKeys.toKarafEntry(ClientKeys.getRunKey().getPublic());
+		Assert.assertTrue(readFileToString(new File(directory, "etc/keys.properties")).contains("karaf = " + entry));
+	}
+}
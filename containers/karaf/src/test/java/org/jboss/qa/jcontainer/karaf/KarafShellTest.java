@@ -0,0 +1,195 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.karaf;
+
+import org.apache.sshd.client.SshClient;
+import org.apache.sshd.client.session.ClientSession;
+import org.apache.sshd.server.Environment;
+import org.apache.sshd.server.ExitCallback;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.channel.ChannelSession;
+import org.apache.sshd.server.command.Command;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+public class KarafShellTest {
+
+	@Rule
+	public Timeout globalTimeout = Timeout.seconds(30);
+
+	private SshServer server;
+	private SshClient client;
+	private ClientSession session;
+
+	@Before
+	public void before() throws Exception {
+		server = SshServer.setUpDefaultServer();
+		server.setPort(0);
+		server.setKeyPairProvider(new SimpleGeneratorHostKeyProvider());
+		server.setPasswordAuthenticator((username, password, serverSession) -> true);
+		server.setShellFactory(channel -> new FakeShell());
+		server.start();
+		client = SshClient.setUpDefaultClient();
+		client.start();
+		session = client.connect("karaf", "localhost", server.getPort()).verify(5000).getSession();
+		session.addPasswordIdentity("karaf");
+		session.auth().verify(5000);
+	}
+
+	@After
+	public void after() throws Exception {
+		session.close();
+		client.stop();
+		server.stop();
+	}
+
+	@Test
+	public void commandsArePipelined() throws Exception {
+		try (KarafShell shell = new KarafShell(session)) {
+			final List<CompletableFuture<String>> results = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				results.add(shell.execute("cmd" + i));
+			}
+			for (int i = 0; i < 200; i++) {
+				Assert.assertEquals("out:cmd" + i + System.lineSeparator(), results.get(i).get());
+			}
+		}
+	}
+
+	@Test
+	public void failedCommand() throws Exception {
+		try (KarafShell shell = new KarafShell(session)) {
+			final CompletableFuture<String> failed = shell.execute("unknown");
+			final CompletableFuture<String> next = shell.execute("next");
+			try {
+				failed.get();
+				Assert.fail("Command should fail");
+			} catch (ExecutionException e) {
+				Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+			}
+			Assert.assertEquals("out:next" + System.lineSeparator(), next.get());
+		}
+	}
+
+	@Test
+	public void closedShell() throws Exception {
+		final KarafShell shell = new KarafShell(session);
+		shell.close();
+		try {
+			shell.execute("cmd").get();
+			Assert.fail("Closed shell should not execute commands");
+		} catch (ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+	}
+
+	@Test
+	public void persistentShellCommandTimeout() throws Exception {
+		final KarafConfiguration configuration = KarafConfiguration.builder().host("localhost").sshPort(server.getPort())
+				.username("karaf").password("karaf").persistentShell().commandTimeout(500).build();
+		try (KarafClient<KarafConfiguration> karafClient = new KarafClient<>(configuration)) {
+			try {
+				karafClient.execute(Arrays.asList("cmd", "hang", "next"));
+				Assert.fail("Command should time out");
+			} catch (TimeoutException e) {
+				Assert.assertTrue(e.getMessage().contains("'hang'"));
+			}
+			Assert.assertEquals("out:cmd" + System.lineSeparator(), karafClient.getCommandResult());
+			karafClient.execute("cmd");
+			Assert.assertEquals("out:cmd" + System.lineSeparator(), karafClient.getCommandResult());
+		}
+	}
+
+	/**
+	 * Echoes input after prompt like Karaf console and prints output of commands.
+	 */
+	private static class FakeShell implements Command, Runnable {
+
+		private InputStream in;
+		private OutputStream out;
+
+		@Override
+		public void setInputStream(InputStream in) {
+			this.in = in;
+		}
+
+		@Override
+		public void setOutputStream(OutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public void setErrorStream(OutputStream err) {
+		}
+
+		@Override
+		public void setExitCallback(ExitCallback callback) {
+		}
+
+		@Override
+		public void start(ChannelSession channel, Environment env) {
+			new Thread(this).start();
+		}
+
+		@Override
+		public void destroy(ChannelSession channel) {
+		}
+
+		@Override
+		public void run() {
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+				final PrintStream printer = new PrintStream(out, true, "UTF-8");
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (line.equals("hang")) {
+						// Marker of hanging command never arrives
+						reader.readLine();
+						continue;
+					}
+					printer.print("\u001B[1mkaraf@root()>\u001B[0m " + line + "\r\n");
+					if (line.startsWith("echo ")) {
+						printer.print(line.substring("echo ".length()).replace("\"", "") + "\r\n");
+					} else if (line.equals("unknown")) {
+						printer.print("Command not found: unknown\r\n");
+					} else {
+						printer.print("out:" + line + "\r\n");
+					}
+				}
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+}
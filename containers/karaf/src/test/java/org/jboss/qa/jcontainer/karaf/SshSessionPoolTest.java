@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.karaf;
+
+import org.apache.sshd.client.session.ClientSession;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.Timeout;
+
+import java.io.File;
+import java.security.PublicKey;
+import java.util.concurrent.TimeUnit;
+
+public class SshSessionPoolTest {
+
+	@Rule
+	public Timeout globalTimeout = Timeout.seconds(30);
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private SshServer server;
+	private SshSessionPool pool;
+
+	@Before
+	public void before() throws Exception {
+		server = SshServer.setUpDefaultServer();
+		server.setPort(0);
+		server.setKeyPairProvider(new SimpleGeneratorHostKeyProvider());
+		server.setPasswordAuthenticator((username, password, serverSession) -> "karaf".equals(password));
+		final PublicKey clientKey = ClientKeys.getRunKey().getPublic();
+		server.setPublickeyAuthenticator((username, key, serverSession) -> key.equals(clientKey));
+		server.start();
+	}
+
+	@After
+	public void after() throws Exception {
+		pool.close();
+		server.stop();
+	}
+
+	@Test
+	public void sessionIsReused() throws Exception {
+		pool = new SshSessionPool(SshSessionPool.DEFAULT_IDLE_TIMEOUT);
+		final ClientSession session = acquire("karaf");
+		pool.release(session);
+		Assert.assertSame(session, acquire("karaf"));
+		Assert.assertEquals(1, pool.getCreatedSessions());
+		Assert.assertEquals(1, pool.getReusedSessions());
+		Assert.assertEquals(1, pool.getOpenSessions());
+		Assert.assertEquals(0, pool.getIdleSessions());
+	}
+
+	@Test
+	public void sessionsAreKeyedByCredentials() throws Exception {
+		pool = new SshSessionPool(SshSessionPool.DEFAULT_IDLE_TIMEOUT);
+		final ClientSession session = acquire("karaf");
+		final ClientSession concurrent = acquire("karaf");
+		Assert.assertNotSame(session, concurrent);
+		pool.release(session);
+		try {
+			acquire("wrong");
+			Assert.fail("Session of other credentials should not be reused");
+		} catch (Exception e) {
+			Assert.assertEquals(1, pool.getIdleSessions());
+		}
+	}
+
+	@Test
+	public void closedSessionIsNotReused() throws Exception {
+		pool = new SshSessionPool(SshSessionPool.DEFAULT_IDLE_TIMEOUT);
+		final ClientSession session = acquire("karaf");
+		pool.release(session);
+		session.close(true);
+		Assert.assertNotSame(session, acquire("karaf"));
+		Assert.assertEquals(2, pool.getCreatedSessions());
+		Assert.assertEquals(0, pool.getReusedSessions());
+	}
+
+	@Test
+	public void idleSessionIsEvicted() throws Exception {
+		pool = new SshSessionPool(200);
+		final ClientSession session = acquire("karaf");
+		pool.release(session);
+		Thread.sleep(TimeUnit.SECONDS.toMillis(1));
+		Assert.assertEquals(0, pool.getOpenSessions());
+		Assert.assertEquals(1, pool.getEvictedSessions());
+		Assert.assertFalse(session.isOpen());
+	}
+
+	@Test
+	public void keyAuthentication() throws Exception {
+		pool = new SshSessionPool(SshSessionPool.DEFAULT_IDLE_TIMEOUT);
+		final File keyFile = temporaryFolder.newFile();
+		ClientKeys.write(keyFile, ClientKeys.getRunKey());
+		Assert.assertTrue(pool.acquire("localhost", server.getPort(), "karaf", null, keyFile).isAuthenticated());
+	}
+
+	private ClientSession acquire(String password) throws Exception {
+		return pool.acquire("localhost", server.getPort(), "karaf", password, null);
+	}
+}
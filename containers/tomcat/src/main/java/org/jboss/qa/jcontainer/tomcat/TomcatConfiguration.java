@@ -18,9 +18,11 @@ package org.jboss.qa.jcontainer.tomcat;
 import org.apache.commons.lang3.SystemUtils;
 
 import org.jboss.qa.jcontainer.JavaConfiguration;
+import org.jboss.qa.jcontainer.util.DirectoryCloner;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import lombok.Getter;
@@ -30,13 +32,33 @@ public class TomcatConfiguration extends JavaConfiguration {
 	public static final String CATALINA_OPTS = "CATALINA_OPTS";
 
 	public static final int DEFAULT_HTTP_PORT = 8080;
+	public static final int DEFAULT_SHUTDOWN_PORT = 8005;
+	public static final int DEFAULT_AJP_PORT = 8009;
+	// Binaries and libraries are loaded from CATALINA_HOME
+	private static final List<String> CLONED_BASE_DIRS = Arrays.asList("conf", "webapps");
+	private static final List<String> EMPTY_BASE_DIRS = Arrays.asList("bin", "lib", "logs", "temp", "work");
 
 	@Getter
 	protected final int httpPort;
+	@Getter
+	protected final int shutdownPort;
+	@Getter
+	protected final int ajpPort;
+	protected final File catalinaBase;
 
 	protected TomcatConfiguration(Builder<?> builder) {
 		super(builder);
 		httpPort = builder.httpPort;
+		shutdownPort = builder.shutdownPort;
+		ajpPort = builder.ajpPort;
+		catalinaBase = builder.catalinaBase;
+	}
+
+	/**
+	 * Returns CATALINA_BASE, which is the same as CATALINA_HOME by default.
+	 */
+	public File getBaseDir() {
+		return (catalinaBase != null) ? catalinaBase : directory;
 	}
 
 	public static Builder<?> builder() {
@@ -73,10 +95,16 @@ public class TomcatConfiguration extends JavaConfiguration {
 	public abstract static class Builder<T extends Builder<T>> extends JavaConfiguration.Builder<T> {
 
 		protected int httpPort;
+		protected int shutdownPort;
+		protected int ajpPort;
+		protected File catalinaBase;
+		protected boolean cloneCatalinaBase;
 
 		public Builder() {
 			super();
 			httpPort(DEFAULT_HTTP_PORT);
+			shutdownPort(DEFAULT_SHUTDOWN_PORT);
+			ajpPort(DEFAULT_AJP_PORT);
 			password("");
 			logFileName("catalina.out");
 		}
@@ -91,8 +119,48 @@ public class TomcatConfiguration extends JavaConfiguration {
 			return self();
 		}
 
+		public T shutdownPort(int shutdownPort) {
+			this.shutdownPort = shutdownPort;
+			return self();
+		}
+
+		/**
+		 * Port of AJP connector, it is used only if the connector is enabled in server.xml.
+		 */
+		public T ajpPort(int ajpPort) {
+			this.ajpPort = ajpPort;
+			return self();
+		}
+
+		public T catalinaBase(File catalinaBase) {
+			this.catalinaBase = catalinaBase;
+			return self();
+		}
+
+		/**
+		 * CATALINA_BASE is cloned from the distribution when configuration is built, see {@link DirectoryCloner}.
+		 * Several instances can run from one distribution this way.
+		 */
+		public T cloneCatalinaBase(File catalinaBase) {
+			this.catalinaBase = catalinaBase;
+			this.cloneCatalinaBase = true;
+			return self();
+		}
+
 		public TomcatConfiguration build() {
+			if (allocatePortLease(DEFAULT_HTTP_PORT, DEFAULT_SHUTDOWN_PORT, DEFAULT_AJP_PORT) != null) {
+				httpPort(DEFAULT_HTTP_PORT + portLease.getOffset());
+				shutdownPort(DEFAULT_SHUTDOWN_PORT + portLease.getOffset());
+				ajpPort(DEFAULT_AJP_PORT + portLease.getOffset());
+			}
+			if (cloneCatalinaBase) {
+				DirectoryCloner.clone(directory, catalinaBase, CLONED_BASE_DIRS, EMPTY_BASE_DIRS);
+				cloneCatalinaBase = false;
+			}
 			envProps.put("CATALINA_HOME", directory.getAbsolutePath());
+			if (catalinaBase != null) {
+				envProps.put("CATALINA_BASE", catalinaBase.getAbsolutePath());
+			}
 			return new TomcatConfiguration(this);
 		}
 	}
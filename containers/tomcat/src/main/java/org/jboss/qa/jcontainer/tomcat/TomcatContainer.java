@@ -22,27 +22,16 @@ import org.apache.commons.lang3.SystemUtils;
 import org.jboss.qa.jcontainer.AbstractContainer;
 import org.jboss.qa.jcontainer.util.executor.ProcessBuilderExecutor;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathFactory;
-
 import java.io.File;
 import java.io.FilenameFilter;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -50,6 +39,10 @@ import lombok.extern.slf4j.Slf4j;
 public class TomcatContainer<T extends TomcatConfiguration, U extends TomcatClient<T>, V extends TomcatUser>
 		extends AbstractContainer<T, U, V> {
 
+	private static final Pattern STARTED_LOG_PATTERN = Pattern.compile("Server startup in");
+	private static final Pattern SYSTEM_PROPERTY_OPT = Pattern.compile("(?:^|\\s)-D([^=\\s]+)(?:=(\\S*))?");
+	private static final String USERS_PATH = "/tomcat-users";
+
 	public TomcatContainer(T configuration) {
 		super(configuration);
 		configureServer();
@@ -57,24 +50,14 @@ public class TomcatContainer<T extends TomcatConfiguration, U extends TomcatClie
 
 	protected void configureServer() {
 		try {
-			final File file = new File(configuration.getDirectory(), "conf" + File.separator + "server.xml");
-			final DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
-			final DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
-			final Document doc = docBuilder.parse(file);
-
-			final XPathFactory xPathfactory = XPathFactory.newInstance();
-			final XPath xpath = xPathfactory.newXPath();
-			final XPathExpression expr = xpath.compile("/Server/Service/Connector[@protocol='HTTP/1.1']");
-
-			final Node node = (Node) expr.evaluate(doc, XPathConstants.NODE);
-			node.getAttributes().getNamedItem("port").setNodeValue(Integer.toString(configuration.getHttpPort()));
-
-			// Write the content into xml file
-			final TransformerFactory transformerFactory = TransformerFactory.newInstance();
-			final Transformer transformer = transformerFactory.newTransformer();
-			final DOMSource source = new DOMSource(doc);
-			final StreamResult result = new StreamResult(file);
-			transformer.transform(source, result);
+			final File file = new File(configuration.getBaseDir(), "conf" + File.separator + "server.xml");
+			new XmlPatcher()
+					.set("/Server", null, null, Collections.singletonMap("port", Integer.toString(configuration.getShutdownPort())))
+					.set("/Server/Service/Connector", "protocol", "HTTP/1.1",
+							Collections.singletonMap("port", Integer.toString(configuration.getHttpPort())))
+					.set("/Server/Service/Connector", "protocol", "AJP/1.3",
+							Collections.singletonMap("port", Integer.toString(configuration.getAjpPort())))
+					.apply(file);
 		} catch (Exception e) {
 			log.error("Ports was not configured", e);
 		}
@@ -82,62 +65,30 @@ public class TomcatContainer<T extends TomcatConfiguration, U extends TomcatClie
 
 	@Override
 	public void addUser(V user) throws Exception {
-		try {
-			final File file = new File(configuration.getDirectory(), "conf" + File.separator + "tomcat-users.xml");
-			final DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
-			final DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
-			final Document doc = docBuilder.parse(file);
-
-			// Get the root element
-			final Node rootNode = doc.getElementsByTagName("tomcat-users").item(0);
-
-			// Get existing roles
-			final NodeList roleNodes = doc.getElementsByTagName("role");
-			final List<String> existingRoles = new ArrayList<>();
-			for (int i = 0; i < roleNodes.getLength(); i++) {
-				existingRoles.add(roleNodes.item(i).getAttributes().getNamedItem("rolename").getNodeValue());
-			}
+		addUsers(Collections.singletonList(user));
+	}
 
-			// Add new roles
-			for (String role : user.getRoles()) {
-				if (!existingRoles.contains(role)) {
-					final Element roleEl = doc.createElement("role");
-					roleEl.setAttribute("rolename", role);
-					rootNode.appendChild(roleEl);
+	/**
+	 * Adds users and their roles by one rewrite of tomcat-users.xml, existing users are modified.
+	 */
+	public void addUsers(Collection<? extends V> users) throws Exception {
+		try {
+			final File file = new File(configuration.getBaseDir(), "conf" + File.separator + "tomcat-users.xml");
+			final XmlPatcher patcher = new XmlPatcher();
+			for (V user : users) {
+				for (String role : user.getRoles()) {
+					patcher.upsert(USERS_PATH, "role", "rolename", Collections.singletonMap("rolename", role));
 				}
+				final Map<String, String> attributes = new LinkedHashMap<>();
+				attributes.put("username", user.getUsername());
+				attributes.put("password", user.getPassword());
+				attributes.put("roles", StringUtils.join(user.getRoles(), ","));
+				patcher.upsert(USERS_PATH, "user", "username", attributes);
 			}
-
-			// Get existing users
-			final NodeList userNodes = doc.getElementsByTagName("user");
-			final List<String> existingUsers = new ArrayList<>();
-			for (int i = 0; i < userNodes.getLength(); i++) {
-				existingUsers.add(userNodes.item(i).getAttributes().getNamedItem("username").getNodeValue());
+			patcher.apply(file);
+			for (String username : patcher.getUpdatedKeys(USERS_PATH + "/user")) {
+				log.warn("Existing user '{}' was modified", username);
 			}
-
-			final String newRoles = StringUtils.join(user.getRoles(), ",");
-			if (!existingUsers.contains(user.getUsername())) { // Add new user
-				final Element userEl = doc.createElement("user");
-				userEl.setAttribute("username", user.getUsername());
-				userEl.setAttribute("password", user.getPassword());
-				userEl.setAttribute("roles", newRoles);
-				rootNode.appendChild(userEl);
-			} else { // Modify existing user
-				for (int i = 0; i < userNodes.getLength(); i++) {
-					if (user.getUsername().equals(userNodes.item(i).getAttributes().getNamedItem("username").getNodeValue())) {
-						userNodes.item(i).getAttributes().getNamedItem("password").setNodeValue(user.getPassword());
-						userNodes.item(i).getAttributes().getNamedItem("roles").setNodeValue(newRoles);
-						log.warn("Existing user '{}' was modified", user.getUsername());
-						break;
-					}
-				}
-			}
-
-			// Write the content into xml file
-			final TransformerFactory transformerFactory = TransformerFactory.newInstance();
-			final Transformer transformer = transformerFactory.newTransformer();
-			final DOMSource source = new DOMSource(doc);
-			final StreamResult result = new StreamResult(file);
-			transformer.transform(source, result);
 		} catch (Exception e) {
 			log.error("User was not created", e);
 		}
@@ -151,7 +102,7 @@ public class TomcatContainer<T extends TomcatConfiguration, U extends TomcatClie
 			public void run() {
 				try {
 					final ProcessBuilder processBuilder = new ProcessBuilder(configuration.generateStopCommand());
-					processBuilder.environment().put("CATALINA_HOME", configuration.getDirectory().getAbsolutePath());
+					processBuilder.environment().putAll(configuration.getEnvProps());
 					ProcessBuilderExecutor.syncExecute(processBuilder);
 				} catch (Exception e) {
 					throw new IllegalStateException("Tomcat container was not stopped", e);
@@ -165,15 +116,45 @@ public class TomcatContainer<T extends TomcatConfiguration, U extends TomcatClie
 		return null;
 	}
 
+	@Override
+	protected Pattern getStartedLogPattern() {
+		return STARTED_LOG_PATTERN;
+	}
+
+	@Override
+	protected File getStartedLogFile() {
+		// Tomcat is started in background, its console is redirected by startup script
+		return new File(getLogDirInternal(), "catalina.out");
+	}
+
 	@Override
 	protected File getLogDirInternal() {
-		final File logDir = new File(configuration.getDirectory(), "logs");
+		final File logDir = new File(configuration.getBaseDir(), "logs");
 		if (!logDir.exists() && !logDir.mkdirs()) {
 			throw new IllegalStateException(String.format("Directory %s could not be created", logDir.getAbsoluteFile()));
 		}
 		return logDir;
 	}
 
+	/**
+	 * Tomcat has no client, so properties are resolved locally from the launched configuration: "-D" options of
+	 * CATALINA_OPTS and directories which are passed by catalina script.
+	 */
+	@Override
+	protected Map<String, String> resolveSystemProperties(Collection<String> names) throws Exception {
+		final Map<String, String> properties = new HashMap<>();
+		properties.put("catalina.home", configuration.getDirectory().getAbsolutePath());
+		properties.put("catalina.base", configuration.getBaseDir().getAbsolutePath());
+		final String javaOpts = configuration.getEnvProps().get(configuration.getJavaOptsEnvName());
+		if (javaOpts != null) {
+			final Matcher matcher = SYSTEM_PROPERTY_OPT.matcher(javaOpts);
+			while (matcher.find()) {
+				properties.put(matcher.group(1), matcher.group(2) != null ? matcher.group(2) : "");
+			}
+		}
+		return properties;
+	}
+
 	@Override
 	public File getDefaultLogFile() {
 		// Log file name format on Windows = "catalina.YYYY-MM-DD"
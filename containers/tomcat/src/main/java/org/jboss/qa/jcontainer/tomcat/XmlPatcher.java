@@ -0,0 +1,413 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.tomcat;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies attribute edits and appends elements to XML document in one streaming (StAX) pass.
+ * Comments, processing instructions and text including whitespace are copied as they are, tags are written
+ * from parsed events, so only the layout inside of tags is normalized (attributes on one line, double quotes, empty elements).
+ * Elements are addressed by path of local names, e.g. "/Server/Service/Connector".
+ * <p>
+ * Edits are collected first and the document is rewritten by {@link #apply(File)}, so any number of edits
+ * costs one parse and one write of the file.
+ */
+public class XmlPatcher {
+
+	private static final String DEFAULT_ENCODING = "UTF-8";
+	// CDATA sections are reported as characters by JDK parser otherwise
+	private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+
+	private final List<AttributeEdit> edits = new ArrayList<>();
+	// Keyed upserts by path of the element, e.g. "/tomcat-users/user"
+	private final Map<String, Upsert> upserts = new LinkedHashMap<>();
+	private final Map<String, Set<String>> updated = new HashMap<>();
+
+	/**
+	 * Sets attributes of all elements on the path whose attribute {@code matchName} has value {@code matchValue},
+	 * of all elements on the path if {@code matchName} is NULL.
+	 */
+	public XmlPatcher set(String path, String matchName, String matchValue, Map<String, String> attributes) {
+		edits.add(new AttributeEdit(path, matchName, matchValue, attributes));
+		return this;
+	}
+
+	/**
+	 * Sets attributes of child element of given parent identified by key attribute, e.g. user by its "username".
+	 * Element is appended as the last child of the parent when it does not exist yet.
+	 *
+	 * @param attributes attributes of the element including the key attribute
+	 */
+	public XmlPatcher upsert(String parentPath, String name, String keyName, Map<String, String> attributes) {
+		final String key = attributes.get(keyName);
+		if (key == null) {
+			throw new IllegalArgumentException(String.format("Attribute '%s' of element '%s' is missing", keyName, name));
+		}
+		Upsert upsert = upserts.get(parentPath + "/" + name);
+		if (upsert == null) {
+			upsert = new Upsert(parentPath, name, keyName);
+			upserts.put(parentPath + "/" + name, upsert);
+		}
+		final Map<String, String> merged = upsert.elements.get(key);
+		if (merged == null) {
+			upsert.elements.put(key, new LinkedHashMap<>(attributes));
+		} else {
+			merged.putAll(attributes);
+		}
+		return this;
+	}
+
+	/**
+	 * Returns keys of upserted elements which existed in the document, e.g. "/tomcat-users/user" for users.
+	 * Available after {@link #apply(File)}.
+	 */
+	public Set<String> getUpdatedKeys(String path) {
+		final Set<String> keys = updated.get(path);
+		return keys == null ? Collections.<String>emptySet() : Collections.unmodifiableSet(keys);
+	}
+
+	/**
+	 * Rewrites the file, the new content is written into temporary file which replaces the original one.
+	 */
+	public void apply(File file) throws IOException, XMLStreamException {
+		final File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+		try (
+				InputStream in = new BufferedInputStream(new FileInputStream(file));
+				OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp))
+		) {
+			apply(in, out);
+		} catch (IOException | XMLStreamException | RuntimeException e) {
+			Files.deleteIfExists(tmp.toPath());
+			throw e;
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	public void apply(InputStream in, OutputStream out) throws XMLStreamException {
+		updated.clear();
+		final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+		inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		if (inputFactory.isPropertySupported(REPORT_CDATA)) {
+			inputFactory.setProperty(REPORT_CDATA, true);
+		}
+		final XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+		try {
+			new Pass(reader, out).run();
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static final class AttributeEdit {
+		private final String path;
+		private final String matchName;
+		private final String matchValue;
+		private final Map<String, String> attributes;
+
+		private AttributeEdit(String path, String matchName, String matchValue, Map<String, String> attributes) {
+			this.path = path;
+			this.matchName = matchName;
+			this.matchValue = matchValue;
+			this.attributes = attributes;
+		}
+	}
+
+	private static final class Upsert {
+		private final String parentPath;
+		private final String name;
+		private final String keyName;
+		private final Map<String, Map<String, String>> elements = new LinkedHashMap<>();
+
+		private Upsert(String parentPath, String name, String keyName) {
+			this.parentPath = parentPath;
+			this.name = name;
+			this.keyName = keyName;
+		}
+	}
+
+	/**
+	 * Open tag which is written on the next event, so the element is written as empty one when it has no content.
+	 */
+	private static final class Tag {
+		private final QName name;
+		private final String path;
+		private final Map<String, String> namespaces = new LinkedHashMap<>();
+		private final Map<QName, String> attributes = new LinkedHashMap<>();
+
+		private Tag(QName name, String path) {
+			this.name = name;
+			this.path = path;
+		}
+	}
+
+	/**
+	 * State of one rewrite. Whitespace is held back until the next event, so appended children can be
+	 * written before the whitespace which precedes the end tag of their parent.
+	 */
+	private final class Pass {
+		private final XMLStreamReader reader;
+		private final XMLStreamWriter writer;
+		private final Deque<String> paths = new ArrayDeque<>();
+		// Indentation of open elements and of their children, used for appended elements
+		private final Deque<String> indents = new ArrayDeque<>();
+		private final Deque<String> childIndents = new ArrayDeque<>();
+		// Elements which were not found yet, by upsert path
+		private final Map<String, Map<String, Map<String, String>>> pending = new HashMap<>();
+		private Tag tag;
+		private String whitespace;
+		private boolean started;
+
+		private Pass(XMLStreamReader reader, OutputStream out) throws XMLStreamException {
+			this.reader = reader;
+			final String encoding = reader.getCharacterEncodingScheme();
+			writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, encoding == null ? DEFAULT_ENCODING : encoding);
+			if (encoding != null) {
+				writer.writeStartDocument(encoding, reader.getVersion());
+				started = true;
+			} else if (reader.getVersion() != null) {
+				writer.writeStartDocument(reader.getVersion());
+				started = true;
+			}
+			for (Map.Entry<String, Upsert> entry : upserts.entrySet()) {
+				pending.put(entry.getKey(), new LinkedHashMap<>(entry.getValue().elements));
+			}
+		}
+
+		private void run() throws XMLStreamException {
+			while (reader.hasNext()) {
+				final int event = reader.next();
+				if (event == XMLStreamConstants.END_ELEMENT) {
+					endElement();
+					continue;
+				}
+				writeTag(false);
+				switch (event) {
+					case XMLStreamConstants.START_ELEMENT:
+						startElement();
+						break;
+					case XMLStreamConstants.CHARACTERS:
+					case XMLStreamConstants.SPACE:
+						characters(reader.getText());
+						break;
+					case XMLStreamConstants.CDATA:
+						flushWhitespace();
+						writer.writeCData(reader.getText());
+						break;
+					case XMLStreamConstants.COMMENT:
+						prologBreak();
+						flushWhitespace();
+						writer.writeComment(reader.getText());
+						break;
+					case XMLStreamConstants.PROCESSING_INSTRUCTION:
+						prologBreak();
+						flushWhitespace();
+						writer.writeProcessingInstruction(reader.getPITarget(), reader.getPIData());
+						break;
+					case XMLStreamConstants.DTD:
+						prologBreak();
+						writer.writeDTD(reader.getText());
+						break;
+					case XMLStreamConstants.END_DOCUMENT:
+						flushWhitespace();
+						writer.writeCharacters("\n");
+						writer.writeEndDocument();
+						break;
+					default:
+						break;
+				}
+			}
+			writer.flush();
+			writer.close();
+		}
+
+		/**
+		 * Whitespace outside of the root element is not reported by parser, items of prolog are kept on separate lines.
+		 */
+		private void prologBreak() throws XMLStreamException {
+			if (paths.isEmpty()) {
+				if (started) {
+					writer.writeCharacters("\n");
+				}
+				started = true;
+			}
+		}
+
+		private void startElement() throws XMLStreamException {
+			prologBreak();
+			final String parent = paths.isEmpty() ? "" : paths.peek();
+			final String path = parent + "/" + reader.getLocalName();
+			final String parentIndent = childIndents.isEmpty() ? "\n" : childIndents.peek();
+			String indent = lineIndent(whitespace);
+			if (indent == null) {
+				indent = parentIndent;
+			} else if (!childIndents.isEmpty()) {
+				childIndents.pop();
+				childIndents.push(indent);
+			}
+			flushWhitespace();
+
+			tag = new Tag(reader.getName(), path);
+			for (int i = 0; i < reader.getNamespaceCount(); i++) {
+				tag.namespaces.put(reader.getNamespacePrefix(i), reader.getNamespaceURI(i));
+			}
+			for (int i = 0; i < reader.getAttributeCount(); i++) {
+				tag.attributes.put(reader.getAttributeName(i), reader.getAttributeValue(i));
+			}
+			applyEdits(path, tag.attributes);
+			paths.push(path);
+			indents.push(indent);
+			childIndents.push(indent + "\t");
+		}
+
+		private void writeTag(boolean empty) throws XMLStreamException {
+			if (tag == null) {
+				return;
+			}
+			final QName name = tag.name;
+			if (empty) {
+				writer.writeEmptyElement(name.getPrefix(), name.getLocalPart(), name.getNamespaceURI());
+			} else {
+				writer.writeStartElement(name.getPrefix(), name.getLocalPart(), name.getNamespaceURI());
+			}
+			for (Map.Entry<String, String> namespace : tag.namespaces.entrySet()) {
+				if (namespace.getKey() == null || namespace.getKey().isEmpty()) {
+					writer.writeDefaultNamespace(namespace.getValue());
+				} else {
+					writer.writeNamespace(namespace.getKey(), namespace.getValue());
+				}
+			}
+			for (Map.Entry<QName, String> attribute : tag.attributes.entrySet()) {
+				final QName attributeName = attribute.getKey();
+				if (attributeName.getNamespaceURI().isEmpty()) {
+					writer.writeAttribute(attributeName.getLocalPart(), attribute.getValue());
+				} else {
+					writer.writeAttribute(attributeName.getPrefix(), attributeName.getNamespaceURI(),
+							attributeName.getLocalPart(), attribute.getValue());
+				}
+			}
+			tag = null;
+		}
+
+		private void applyEdits(String path, Map<QName, String> attributes) {
+			for (AttributeEdit edit : edits) {
+				if (edit.path.equals(path) && (edit.matchName == null || edit.matchValue.equals(attributes.get(new QName(edit.matchName))))) {
+					putAll(attributes, edit.attributes);
+				}
+			}
+			final Upsert upsert = upserts.get(path);
+			if (upsert != null) {
+				final String key = attributes.get(new QName(upsert.keyName));
+				final Map<String, String> values = pending.get(path).remove(key);
+				if (values != null) {
+					putAll(attributes, values);
+					Set<String> keys = updated.get(path);
+					if (keys == null) {
+						keys = new LinkedHashSet<>();
+						updated.put(path, keys);
+					}
+					keys.add(key);
+				}
+			}
+		}
+
+		private void putAll(Map<QName, String> attributes, Map<String, String> values) {
+			for (Map.Entry<String, String> value : values.entrySet()) {
+				attributes.put(new QName(value.getKey()), value.getValue());
+			}
+		}
+
+		private String lineIndent(String text) {
+			final int line = text == null ? -1 : text.lastIndexOf('\n');
+			return line < 0 ? null : text.substring(line);
+		}
+
+		private void endElement() throws XMLStreamException {
+			final String path = paths.pop();
+			final String indent = indents.pop();
+			final String childIndent = childIndents.pop();
+			boolean appended = false;
+			for (Upsert upsert : upserts.values()) {
+				if (!upsert.parentPath.equals(path)) {
+					continue;
+				}
+				final Map<String, Map<String, String>> missing = pending.get(upsert.parentPath + "/" + upsert.name);
+				for (Map<String, String> attributes : missing.values()) {
+					writeTag(false);
+					writer.writeCharacters(childIndent);
+					writer.writeEmptyElement(upsert.name);
+					for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+						writer.writeAttribute(attribute.getKey(), attribute.getValue());
+					}
+					appended = true;
+				}
+				missing.clear();
+			}
+			if (tag != null) {
+				writeTag(true);
+				return;
+			}
+			if (appended && whitespace == null) {
+				whitespace = indent;
+			}
+			flushWhitespace();
+			writer.writeEndElement();
+		}
+
+		private void characters(String text) throws XMLStreamException {
+			if (!paths.isEmpty() && text.trim().isEmpty()) {
+				whitespace = whitespace == null ? text : whitespace + text;
+			} else {
+				flushWhitespace();
+				writer.writeCharacters(text);
+			}
+		}
+
+		private void flushWhitespace() throws XMLStreamException {
+			if (whitespace != null) {
+				writer.writeCharacters(whitespace);
+				whitespace = null;
+			}
+		}
+	}
+}
@@ -16,6 +16,7 @@
 package org.jboss.qa.jcontainer.tomcat.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.hamcrest.CoreMatchers.hasItem;
 import static org.hamcrest.Matchers.equalTo;
@@ -23,11 +24,14 @@ import static org.hamcrest.Matchers.equalTo;
 import org.apache.commons.lang3.SystemUtils;
 
 import org.jboss.qa.jcontainer.tomcat.TomcatConfiguration;
+import org.jboss.qa.jcontainer.tomcat.TomcatContainer;
+import org.jboss.qa.jcontainer.tomcat.TomcatUser;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.List;
 
@@ -61,4 +65,15 @@ public class TomcatConfigurationTest {
 
 		assertThat(options, hasItem(equalTo("-Xms" + xms)));
 	}
+
+	@Test
+	public void systemPropertiesOfJavaOpts() {
+		final TomcatConfiguration conf = TomcatConfiguration.builder().directory("catalinaHome").javaOpt("-Dfoo=bar").javaOpt("-Dflag").build();
+		final TomcatContainer<TomcatConfiguration, ?, TomcatUser> container = new TomcatContainer<>(conf);
+
+		assertEquals("bar", container.getSystemProperty("foo"));
+		assertEquals("", container.getSystemProperty("flag"));
+		assertEquals(new File("catalinaHome").getAbsolutePath(), container.getSystemProperty("catalina.base"));
+		assertNull(container.getSystemProperty("undefined"));
+	}
 }
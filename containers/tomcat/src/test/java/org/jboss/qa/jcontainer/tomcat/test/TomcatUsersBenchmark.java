@@ -0,0 +1,175 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.tomcat.test;
+
+import static org.apache.commons.io.FileUtils.writeStringToFile;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import org.jboss.qa.jcontainer.tomcat.TomcatConfiguration;
+import org.jboss.qa.jcontainer.tomcat.TomcatContainer;
+import org.jboss.qa.jcontainer.tomcat.TomcatUser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of adding {@link #users} users with 10 shared roles into tomcat-users.xml, rewrites per user make
+ * {@code dom} and {@code stream} quadratic (minutes for 10k users).
+ * <ul>
+ *     <li>{@code dom} - original implementation (DOM parse and transform per user)</li>
+ *     <li>{@code stream} - {@link TomcatContainer#addUser(TomcatUser)} per user, one streaming rewrite per user</li>
+ *     <li>{@code bulk} - {@link TomcatContainer#addUsers(java.util.Collection)}, one streaming rewrite for all users</li>
+ * </ul>
+ * Run: {@code java -cp target/test-classes:<test classpath> org.jboss.qa.jcontainer.tomcat.test.TomcatUsersBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class TomcatUsersBenchmark {
+
+	private static final String USERS_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<tomcat-users xmlns=\"http://tomcat.apache.org/xml\" version=\"1.0\">\n"
+			+ "  <role rolename=\"manager-gui\"/>\n"
+			+ "</tomcat-users>\n";
+
+	@Param({"10000"})
+	private int users;
+
+	@Param({"dom", "stream", "bulk"})
+	private String mode;
+
+	private File home;
+	private File usersFile;
+	private List<TomcatUser> userList;
+	private TomcatContainer<TomcatConfiguration, ?, TomcatUser> container;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		home = Files.createTempDirectory("tomcat-").toFile();
+		usersFile = new File(home, "conf" + File.separator + "tomcat-users.xml");
+		writeStringToFile(new File(home, "conf" + File.separator + "server.xml"), "<Server><Service>\n"
+				+ "  <Connector port=\"8080\" protocol=\"HTTP/1.1\"/>\n</Service></Server>\n");
+		container = new TomcatContainer<>(TomcatConfiguration.builder().directory(home.getAbsolutePath()).build());
+		userList = new ArrayList<>();
+		for (int i = 0; i < users; i++) {
+			final TomcatUser user = new TomcatUser();
+			user.setUsername("user" + i);
+			user.setPassword("password" + i);
+			user.addRoles("role" + (i % 10));
+			userList.add(user);
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void resetUsers() throws IOException {
+		writeStringToFile(usersFile, USERS_XML);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(home);
+	}
+
+	@Benchmark
+	public long addUsers() throws Exception {
+		switch (mode) {
+			case "dom":
+				for (TomcatUser user : userList) {
+					domAddUser(user);
+				}
+				break;
+			case "stream":
+				for (TomcatUser user : userList) {
+					container.addUser(user);
+				}
+				break;
+			case "bulk":
+				container.addUsers(userList);
+				break;
+			default:
+				throw new IllegalArgumentException(mode);
+		}
+		return usersFile.length();
+	}
+
+	private void domAddUser(TomcatUser user) throws Exception {
+		final Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(usersFile);
+		final Node rootNode = doc.getElementsByTagName("tomcat-users").item(0);
+		final NodeList roleNodes = doc.getElementsByTagName("role");
+		final List<String> existingRoles = new ArrayList<>();
+		for (int i = 0; i < roleNodes.getLength(); i++) {
+			existingRoles.add(roleNodes.item(i).getAttributes().getNamedItem("rolename").getNodeValue());
+		}
+		for (String role : user.getRoles()) {
+			if (!existingRoles.contains(role)) {
+				final Element roleEl = doc.createElement("role");
+				roleEl.setAttribute("rolename", role);
+				rootNode.appendChild(roleEl);
+			}
+		}
+		final NodeList userNodes = doc.getElementsByTagName("user");
+		final List<String> existingUsers = new ArrayList<>();
+		for (int i = 0; i < userNodes.getLength(); i++) {
+			existingUsers.add(userNodes.item(i).getAttributes().getNamedItem("username").getNodeValue());
+		}
+		if (!existingUsers.contains(user.getUsername())) {
+			final Element userEl = doc.createElement("user");
+			userEl.setAttribute("username", user.getUsername());
+			userEl.setAttribute("password", user.getPassword());
+			userEl.setAttribute("roles", StringUtils.join(user.getRoles(), ","));
+			rootNode.appendChild(userEl);
+		}
+		TransformerFactory.newInstance().newTransformer().transform(new DOMSource(doc), new StreamResult(usersFile));
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder().include(TomcatUsersBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.tomcat.test;
+
+import static org.apache.commons.io.FileUtils.readFileToString;
+import static org.apache.commons.io.FileUtils.writeStringToFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.lang3.StringUtils;
+
+import org.jboss.qa.jcontainer.tomcat.TomcatConfiguration;
+import org.jboss.qa.jcontainer.tomcat.TomcatContainer;
+import org.jboss.qa.jcontainer.tomcat.TomcatUser;
+import org.jboss.qa.jcontainer.tomcat.XmlPatcher;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class XmlPatcherTest {
+
+	private static final String SERVER_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<!-- License -->\n"
+			+ "<Server port=\"8005\" shutdown=\"SHUTDOWN\">\n"
+			+ "  <Service name=\"Catalina\">\n"
+			+ "    <!-- HTTP connector -->\n"
+			+ "    <Connector port=\"8080\" protocol=\"HTTP/1.1\"\n"
+			+ "               connectionTimeout=\"20000\" />\n"
+			+ "    <Connector port=\"8009\" protocol=\"AJP/1.3\"/>\n"
+			+ "    <Engine name=\"Catalina\" defaultHost=\"localhost\"></Engine>\n"
+			+ "  </Service>\n"
+			+ "</Server>\n";
+
+	private static final String USERS_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<!-- License -->\n"
+			+ "<tomcat-users xmlns=\"http://tomcat.apache.org/xml\"\n"
+			+ "              xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n"
+			+ "              xsi:schemaLocation=\"http://tomcat.apache.org/xml tomcat-users.xsd\"\n"
+			+ "              version=\"1.0\">\n"
+			+ "<!--\n"
+			+ "  <user username=\"admin\" password=\"&lt;must-be-changed&gt;\" roles=\"manager-gui\"/>\n"
+			+ "-->\n"
+			+ "  <role rolename=\"manager\"/>\n"
+			+ "  <user username=\"tomcat\" password=\"tomcat\" roles=\"manager\"/>\n"
+			+ "</tomcat-users>\n";
+
+	// Attributes of rewritten tags are on one line
+	private static final String PATCHED_USERS_XML = USERS_XML.replaceAll("\"\n +", "\" ");
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void connectorPortIsChanged() throws Exception {
+		final File file = temporaryFolder.newFile("server.xml");
+		writeStringToFile(file, SERVER_XML);
+		new XmlPatcher().set("/Server/Service/Connector", "protocol", "HTTP/1.1", Collections.singletonMap("port", "8180")).apply(file);
+		final String expected = SERVER_XML
+				.replace("<Connector port=\"8080\" protocol=\"HTTP/1.1\"\n               connectionTimeout=\"20000\" />",
+						"<Connector port=\"8180\" protocol=\"HTTP/1.1\" connectionTimeout=\"20000\"/>")
+				.replace("defaultHost=\"localhost\"></Engine>", "defaultHost=\"localhost\"/>");
+		assertEquals(expected, readFileToString(file));
+	}
+
+	@Test
+	public void allPortsAreChangedInOnePass() throws Exception {
+		final File file = temporaryFolder.newFile("server.xml");
+		writeStringToFile(file, SERVER_XML);
+		new XmlPatcher()
+				.set("/Server", null, null, Collections.singletonMap("port", "8105"))
+				.set("/Server/Service/Connector", "protocol", "HTTP/1.1", Collections.singletonMap("port", "8180"))
+				.set("/Server/Service/Connector", "protocol", "AJP/1.3", Collections.singletonMap("port", "8109"))
+				.apply(file);
+		final String content = readFileToString(file);
+		assertTrue(content.contains("<Server port=\"8105\" shutdown=\"SHUTDOWN\">"));
+		assertTrue(content.contains("<Connector port=\"8180\" protocol=\"HTTP/1.1\" connectionTimeout=\"20000\"/>"));
+		assertTrue(content.contains("<Connector port=\"8109\" protocol=\"AJP/1.3\"/>"));
+	}
+
+	@Test
+	public void usersAreAppendedWithIndentation() throws Exception {
+		final File file = temporaryFolder.newFile("tomcat-users.xml");
+		writeStringToFile(file, USERS_XML);
+		final XmlPatcher patcher = new XmlPatcher()
+				.upsert("/tomcat-users", "role", "rolename", Collections.singletonMap("rolename", "manager"))
+				.upsert("/tomcat-users", "role", "rolename", Collections.singletonMap("rolename", "admin"))
+				.upsert("/tomcat-users", "user", "username", user("admin", "secret", "manager,admin"));
+		patcher.apply(file);
+		final String expected = PATCHED_USERS_XML.replace("</tomcat-users>", "  <role rolename=\"admin\"/>\n"
+				+ "  <user username=\"admin\" password=\"secret\" roles=\"manager,admin\"/>\n</tomcat-users>");
+		assertEquals(expected, readFileToString(file));
+		assertEquals(Collections.singleton("manager"), patcher.getUpdatedKeys("/tomcat-users/role"));
+		assertTrue(patcher.getUpdatedKeys("/tomcat-users/user").isEmpty());
+	}
+
+	@Test
+	public void existingUserIsModified() throws Exception {
+		final File file = temporaryFolder.newFile("tomcat-users.xml");
+		writeStringToFile(file, USERS_XML);
+		final XmlPatcher patcher = new XmlPatcher().upsert("/tomcat-users", "user", "username", user("tomcat", "changed", "manager"));
+		patcher.apply(file);
+		assertEquals(PATCHED_USERS_XML.replace("password=\"tomcat\"", "password=\"changed\""), readFileToString(file));
+		assertEquals(Collections.singleton("tomcat"), patcher.getUpdatedKeys("/tomcat-users/user"));
+	}
+
+	@Test
+	public void usersAreAddedInOneRewrite() throws Exception {
+		final File home = temporaryFolder.newFolder("tomcat");
+		final File conf = new File(home, "conf");
+		writeStringToFile(new File(conf, "server.xml"), SERVER_XML);
+		writeStringToFile(new File(conf, "tomcat-users.xml"), USERS_XML);
+		final TomcatContainer<TomcatConfiguration, ?, TomcatUser> container =
+				new TomcatContainer<>(TomcatConfiguration.builder().directory(home.getAbsolutePath()).build());
+		final List<TomcatUser> users = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			final TomcatUser user = new TomcatUser();
+			user.setUsername("user" + i);
+			user.setPassword("password" + i);
+			user.addRoles("role" + (i % 10), "manager");
+			users.add(user);
+		}
+		container.addUsers(users);
+		final String content = readFileToString(new File(conf, "tomcat-users.xml"));
+		// Including the commented out user
+		assertEquals(1002, StringUtils.countMatches(content, "<user username="));
+		assertEquals(11, StringUtils.countMatches(content, "<role rolename="));
+		assertTrue(content.contains("\n  <user username=\"user999\" password=\"password999\" roles=\"role9,manager\"/>\n</tomcat-users>"));
+		assertTrue(readFileToString(new File(conf, "server.xml")).contains("<!-- HTTP connector -->"));
+	}
+
+	private static Map<String, String> user(String username, String password, String roles) {
+		final Map<String, String> attributes = new LinkedHashMap<>();
+		attributes.put("username", username);
+		attributes.put("password", password);
+		attributes.put("roles", roles);
+		return attributes;
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.wildfly;
+
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.as.controller.client.OperationMessageHandler;
+import org.jboss.dmr.ModelNode;
+import org.jboss.qa.jcontainer.util.executor.SharedExecutor;
+import org.jboss.threads.AsyncFuture;
+
+import org.wildfly.extras.creaper.core.online.ModelNodeResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends management operations without waiting for replies of previous ones. Number of operations in flight is limited,
+ * other operations are queued and sent as soon as any reply comes. Futures are completed on {@link SharedExecutor},
+ * so callbacks of caller do not block threads of management connection.
+ */
+class OperationPipeline implements Closeable {
+
+	private final ModelControllerClient client;
+	private final int maxInFlight;
+	private final Queue<Operation> queue = new ArrayDeque<>();
+	private int inFlight;
+	private boolean closed;
+
+	OperationPipeline(ModelControllerClient client, int maxInFlight) {
+		this.client = client;
+		this.maxInFlight = Math.max(1, maxInFlight);
+	}
+
+	CompletableFuture<ModelNodeResult> submit(ModelNode operation) {
+		final CompletableFuture<ModelNodeResult> result = new CompletableFuture<>();
+		synchronized (this) {
+			if (closed) {
+				result.completeExceptionally(new IllegalStateException("Client was closed"));
+				return result;
+			}
+			queue.add(new Operation(operation, result));
+		}
+		sendQueued();
+		return result;
+	}
+
+	synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	synchronized int getQueued() {
+		return queue.size();
+	}
+
+	private void sendQueued() {
+		while (true) {
+			final Operation operation;
+			synchronized (this) {
+				if (closed || inFlight >= maxInFlight || queue.isEmpty()) {
+					return;
+				}
+				operation = queue.poll();
+				inFlight++;
+			}
+			send(operation);
+		}
+	}
+
+	private void send(Operation operation) {
+		try {
+			client.executeAsync(operation.request, OperationMessageHandler.DISCARD).addListener(new ReplyListener(), operation);
+		} catch (RuntimeException e) {
+			finish(operation, null, e);
+		}
+	}
+
+	private void finish(final Operation operation, final ModelNode reply, final Throwable failure) {
+		synchronized (this) {
+			inFlight--;
+		}
+		SharedExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (failure != null) {
+					operation.result.completeExceptionally(failure);
+				} else {
+					operation.result.complete(new ModelNodeResult(reply));
+				}
+			}
+		});
+		sendQueued();
+	}
+
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			closed = true;
+			for (Operation operation : queue) {
+				operation.result.completeExceptionally(new IllegalStateException("Client was closed"));
+			}
+			queue.clear();
+		}
+		client.close();
+	}
+
+	private static class Operation {
+		private final ModelNode request;
+		private final CompletableFuture<ModelNodeResult> result;
+
+		Operation(ModelNode request, CompletableFuture<ModelNodeResult> result) {
+			this.request = request;
+			this.result = result;
+		}
+	}
+
+	private class ReplyListener implements AsyncFuture.Listener<ModelNode, Operation> {
+
+		@Override
+		public void handleComplete(AsyncFuture<? extends ModelNode> future, Operation operation) {
+			try {
+				finish(operation, future.getUninterruptibly(), null);
+			} catch (Exception e) {
+				finish(operation, null, e);
+			}
+		}
+
+		@Override
+		public void handleFailed(AsyncFuture<? extends ModelNode> future, Throwable cause, Operation operation) {
+			finish(operation, null, cause);
+		}
+
+		@Override
+		public void handleCancelled(AsyncFuture<? extends ModelNode> future, Operation operation) {
+			finish(operation, null, new IllegalStateException("Operation was cancelled"));
+		}
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.wildfly;
+
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.dmr.ModelNode;
+import org.jboss.qa.jcontainer.readiness.ReadinessCheck;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Polls server state over one management connection, which is reused by all polls and closed with the check.
+ * Server is ready when boot is finished, i.e. it is "running" or it requires reload/restart. Boot errors are read
+ * by every poll which gets server state, also while the server is still starting, and they are part of
+ * {@link #toString()}, so they are reported when waiting fails or times out. If other check fired first, final boot
+ * errors are read by {@link #getBootErrors()}.
+ */
+@Slf4j
+public class ServerStateReadinessCheck implements ReadinessCheck, Closeable {
+
+	private static final Set<String> BOOTED_STATES = new HashSet<>(Arrays.asList("running", "reload-required", "restart-required"));
+
+	private final String protocol;
+	private final String host;
+	private final int port;
+	private ModelControllerClient client;
+	private String state;
+	private List<String> bootErrors = Collections.emptyList();
+	private boolean bootErrorsRead;
+
+	/**
+	 * @param protocol management protocol, e.g. "remote+http"
+	 */
+	public ServerStateReadinessCheck(String protocol, String host, int port) {
+		this.protocol = protocol;
+		this.host = host;
+		this.port = port;
+	}
+
+	@Override
+	public synchronized boolean isReady() throws IOException {
+		if (client == null) {
+			client = ModelControllerClient.Factory.create(protocol, host, port);
+		}
+		final ModelNode operation = new ModelNode();
+		operation.get("operation").set("read-attribute");
+		operation.get("address").setEmptyList();
+		operation.get("name").set("server-state");
+		final ModelNode reply = client.execute(operation);
+		if (!"success".equals(reply.get("outcome").asString())) {
+			return false;
+		}
+		state = reply.get("result").asString();
+		bootErrors = readBootErrors();
+		if (!BOOTED_STATES.contains(state)) {
+			// Errors so far, server may hang in starting state
+			return false;
+		}
+		bootErrorsRead = true;
+		if (!bootErrors.isEmpty()) {
+			log.warn("Server was started with boot errors: {}", bootErrors);
+		}
+		return true;
+	}
+
+	private List<String> readBootErrors() throws IOException {
+		final ModelNode operation = new ModelNode();
+		operation.get("operation").set("read-boot-errors");
+		operation.get("address").add("core-service", "management");
+		final ModelNode reply = client.execute(operation);
+		if (!"success".equals(reply.get("outcome").asString()) || !reply.get("result").isDefined()) {
+			// Operation is not supported by older servers
+			return Collections.emptyList();
+		}
+		final List<String> errors = new ArrayList<>();
+		for (ModelNode error : reply.get("result").asList()) {
+			errors.add(String.format("%s: %s", error.get("failed-operation"), error.get("failure-description").asString()));
+		}
+		return errors;
+	}
+
+	/**
+	 * Returns boot errors read when server was ready, empty list if there were none. If the server was not seen ready
+	 * by this check, boot errors are read now, by a new connection if the check is closed.
+	 */
+	public synchronized List<String> getBootErrors() {
+		if (!bootErrorsRead) {
+			final boolean connected = client != null;
+			try {
+				if (!connected) {
+					client = ModelControllerClient.Factory.create(protocol, host, port);
+				}
+				bootErrors = readBootErrors();
+				bootErrorsRead = true;
+			} catch (IOException e) {
+				log.warn("Boot errors were not read: {}", e.getMessage());
+				log.trace(e.getMessage(), e);
+			} finally {
+				if (!connected) {
+					closeClient();
+				}
+			}
+		}
+		return Collections.unmodifiableList(bootErrors);
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (client != null) {
+			client.close();
+			client = null;
+		}
+	}
+
+	private void closeClient() {
+		try {
+			close();
+		} catch (IOException e) {
+			log.trace(e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		final StringBuilder sb = new StringBuilder(String.format("server state %s:%d (last state '%s')", host, port, state));
+		if (!bootErrors.isEmpty()) {
+			sb.append(", boot errors: ").append(bootErrors);
+		}
+		return sb.toString();
+	}
+}
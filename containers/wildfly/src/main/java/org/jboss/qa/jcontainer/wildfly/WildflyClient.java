@@ -15,10 +15,17 @@
  */
 package org.jboss.qa.jcontainer.wildfly;
 
+import org.jboss.as.cli.CliInitializationException;
+import org.jboss.as.cli.CommandContext;
+import org.jboss.as.cli.CommandContextFactory;
+import org.jboss.as.cli.CommandFormatException;
+import org.jboss.as.cli.impl.CommandContextConfiguration;
 import org.jboss.as.cli.operation.OperationFormatException;
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.dmr.ModelNode;
 import org.jboss.qa.jcontainer.Client;
+import org.jboss.qa.jcontainer.util.LineOutputStream;
 
-import org.wildfly.extras.creaper.commands.foundation.online.CliFile;
 import org.wildfly.extras.creaper.core.ManagementClient;
 import org.wildfly.extras.creaper.core.online.CliException;
 import org.wildfly.extras.creaper.core.online.ManagementProtocol;
@@ -26,18 +33,35 @@ import org.wildfly.extras.creaper.core.online.ModelNodeResult;
 import org.wildfly.extras.creaper.core.online.OnlineManagementClient;
 import org.wildfly.extras.creaper.core.online.OnlineOptions;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class WildflyClient<T extends WildflyConfiguration> extends Client<T> {
 
+	private static final Set<String> BLOCK_STARTS = new HashSet<>(Arrays.asList("if", "try", "for", "batch"));
+	private static final Set<String> BLOCK_ENDS = new HashSet<>(
+			Arrays.asList("end-if", "end-try", "done", "run-batch", "discard-batch", "holdback-batch"));
+	// Operations which can not be part of composite operation
+	private static final Set<String> SEPARATE_OPERATIONS = new HashSet<>(Arrays.asList("reload", "shutdown", "composite"));
+
 	protected ManagementProtocol protocol;
 	protected OnlineManagementClient client;
 	protected ModelNodeResult lastResult;
+	protected List<ModelNodeResult> lastResults;
+	private CommandContext parser;
+	private OperationPipeline pipeline;
 
 	public WildflyClient(T configuration) {
 		super(configuration);
@@ -61,29 +85,207 @@ public class WildflyClient<T extends WildflyConfiguration> extends Client<T> {
 
 	@Override
 	protected void executeInternal(String command) throws Exception {
+		final ModelNodeResult result = executeOperation(command);
+		if (result != null) {
+			lastResult = result;
+		}
+	}
+
+	/**
+	 * Management response is received as a whole, it is written to consumer line by line
+	 * without building its string representation and it is not kept as command result.
+	 * Commands which are executed by CLI (see {@link #executeOperation(String)}) pass no lines.
+	 */
+	@Override
+	protected void executeInternal(String command, Consumer<String> lineConsumer) throws Exception {
+		lastResult = null;
+		final ModelNodeResult result = executeOperation(command);
+		if (result == null) {
+			return;
+		}
+		try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+				LineOutputStream.of(StandardCharsets.UTF_8, lineConsumer), StandardCharsets.UTF_8))) {
+			result.writeString(writer, false);
+		}
+	}
+
+	/**
+	 * Executes command as management operation, commands unsupported by Creaper are executed by CLI.
+	 *
+	 * @return result of operation, NULL if command was executed by CLI or failed
+	 */
+	private ModelNodeResult executeOperation(String command) throws Exception {
 		try {
-			lastResult = client.execute(command);
+			return client.execute(command);
 		} catch (CliException e) {
 			log.trace(e.getMessage(), e);
 			if (e.getCause().getClass().isAssignableFrom(OperationFormatException.class)) {
 				// Workaround for unsupported commands by Wildfly Creaper project
 				client.executeCli(command);
 			}
+			return null;
 		}
 	}
 
+	/**
+	 * Operations with absolute address are sent as composite operations of at most
+	 * CLI batch size (see configuration) steps, each composite operation is atomic. Other commands and
+	 * all commands in control flow blocks ("if", "try", "for", "batch") are executed by CLI line by line.
+	 */
 	@Override
 	protected void executeInternal(List<String> commands) throws Exception {
-		// List of commands may contain commands like "if", "batch". Use rather "executeCli" then "execute".
-		for (String cmd : commands) {
-			client.executeCli(cmd);
+		final List<ModelNodeResult> results = new ArrayList<>();
+		final List<ModelNode> operations = new ArrayList<>();
+		int depth = 0;
+		for (String cmd : joinLines(commands)) {
+			final String keyword = cmd.split("\\s+", 2)[0];
+			final ModelNode operation = depth == 0 ? parseOperation(cmd) : null;
+			if (operation != null) {
+				operations.add(operation);
+				if (operations.size() >= configuration.getCliBatchSize()) {
+					executeOperations(operations, results);
+				}
+			} else {
+				executeOperations(operations, results);
+				client.executeCli(cmd);
+				results.add(null);
+				if (BLOCK_STARTS.contains(keyword)) {
+					depth++;
+				} else if (BLOCK_ENDS.contains(keyword)) {
+					depth--;
+				}
+			}
 		}
+		executeOperations(operations, results);
+		lastResults = results;
 	}
 
-	@Override
-	public void execute(File file) throws Exception {
-		log.info("Execute commands from file: {}", file.getAbsoluteFile());
-		client.apply(new CliFile(file));
+	private ModelNode parseOperation(String command) {
+		if (configuration.getCliBatchSize() <= 1 || !command.startsWith("/")) {
+			return null;
+		}
+		try {
+			final ModelNode operation = getParser().buildRequest(command);
+			if (operation.has("operation-headers") || SEPARATE_OPERATIONS.contains(operation.get("operation").asString())) {
+				return null;
+			}
+			return operation;
+		} catch (CommandFormatException | CliInitializationException e) {
+			log.trace(e.getMessage(), e);
+			return null;
+		}
+	}
+
+	private void executeOperations(List<ModelNode> operations, List<ModelNodeResult> results) throws Exception {
+		if (operations.isEmpty()) {
+			return;
+		}
+		if (operations.size() == 1) {
+			lastResult = client.execute(operations.get(0));
+			checkResult(lastResult, operations.get(0));
+			results.add(lastResult);
+		} else {
+			final ModelNode composite = new ModelNode();
+			composite.get("operation").set("composite");
+			composite.get("address").setEmptyList();
+			for (ModelNode operation : operations) {
+				composite.get("steps").add(operation);
+			}
+			log.debug("Execute {} operations as composite operation", operations.size());
+			lastResult = client.execute(composite);
+			checkResult(lastResult, composite);
+			for (int i = 1; i <= operations.size(); i++) {
+				results.add(new ModelNodeResult(lastResult.get("result", "step-" + i)));
+			}
+		}
+		operations.clear();
+	}
+
+	/**
+	 * Sends operation without waiting for replies of previous ones, see
+	 * {@link WildflyConfiguration.Builder#maxInFlightOperations(int)}.
+	 *
+	 * @param operation CLI operation with absolute address, e.g. "/subsystem=undertow:read-resource"
+	 */
+	public CompletableFuture<ModelNodeResult> executeAsync(String operation) {
+		try {
+			final ModelNode request;
+			synchronized (this) {
+				request = getParser().buildRequest(operation);
+			}
+			return executeAsync(request);
+		} catch (Exception e) {
+			return failedFuture(e);
+		}
+	}
+
+	public CompletableFuture<ModelNodeResult> executeAsync(ModelNode operation) {
+		try {
+			if (!isConnected()) {
+				connect();
+			}
+			return getPipeline().submit(operation);
+		} catch (Exception e) {
+			return failedFuture(e);
+		}
+	}
+
+	private synchronized OperationPipeline getPipeline() throws IOException {
+		if (pipeline == null) {
+			// Creaper does not expose its controller client, asynchronous operations use their own connection
+			pipeline = new OperationPipeline(ModelControllerClient.Factory.create(getProtocolName(),
+					configuration.getHost(), configuration.getManagementPort()), configuration.getMaxInFlightOperations());
+		}
+		return pipeline;
+	}
+
+	/**
+	 * Returns name of management protocol for native controller clients, e.g. "remote+http".
+	 */
+	public String getProtocolName() {
+		return protocol == ManagementProtocol.REMOTE ? "remote" : "remote+http";
+	}
+
+	private static <R> CompletableFuture<R> failedFuture(Exception e) {
+		final CompletableFuture<R> future = new CompletableFuture<>();
+		future.completeExceptionally(e);
+		return future;
+	}
+
+	private static void checkResult(ModelNodeResult result, ModelNode operation) throws CliException {
+		if (!result.isSuccess()) {
+			throw new CliException(String.format("Operation %s failed: %s", operation, result.get("failure-description")));
+		}
+	}
+
+	private static List<String> joinLines(List<String> lines) {
+		final List<String> commands = new ArrayList<>();
+		final StringBuilder command = new StringBuilder();
+		for (String line : lines) {
+			final String trimmed = line.trim();
+			if (command.length() == 0 && (trimmed.isEmpty() || trimmed.startsWith("#"))) {
+				continue;
+			}
+			if (trimmed.endsWith("\\")) {
+				command.append(trimmed, 0, trimmed.length() - 1);
+			} else {
+				commands.add(command.append(trimmed).toString());
+				command.setLength(0);
+			}
+		}
+		if (command.length() > 0) {
+			commands.add(command.toString());
+		}
+		return commands;
+	}
+
+	private CommandContext getParser() throws CliInitializationException {
+		if (parser == null) {
+			// Disconnected context is used only to build requests, validation would need round trip per operation
+			parser = CommandContextFactory.getInstance().newCommandContext(
+					new CommandContextConfiguration.Builder().setValidateOperationRequests(false).build());
+		}
+		return parser;
 	}
 
 	@Override
@@ -91,12 +293,30 @@ public class WildflyClient<T extends WildflyConfiguration> extends Client<T> {
 		client.close();
 		client = null;
 		lastResult = null;
+		lastResults = null;
+		if (parser != null) {
+			parser.terminateSession();
+			parser = null;
+		}
+		synchronized (this) {
+			if (pipeline != null) {
+				pipeline.close();
+				pipeline = null;
+			}
+		}
 	}
 
 	public ModelNodeResult getCommandResult() {
 		return lastResult;
 	}
 
+	/**
+	 * Returns results of commands executed by the last {@link #execute(List)}, NULL for commands executed by CLI.
+	 */
+	public List<ModelNodeResult> getCommandResults() {
+		return lastResults;
+	}
+
 	public OnlineManagementClient getInternalClient() {
 		return client;
 	}
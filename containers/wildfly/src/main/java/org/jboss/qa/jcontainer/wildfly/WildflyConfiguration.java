@@ -18,9 +18,11 @@ package org.jboss.qa.jcontainer.wildfly;
 import org.apache.commons.lang3.SystemUtils;
 
 import org.jboss.qa.jcontainer.JavaConfiguration;
+import org.jboss.qa.jcontainer.util.DirectoryCloner;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import lombok.Getter;
@@ -29,6 +31,13 @@ public class WildflyConfiguration extends JavaConfiguration {
 
 	public static final int DEFAULT_PORT_OFFSET = 0;
 	public static final int DEFAULT_MANAGEMENT_PORT = 9990;
+	public static final int DEFAULT_CLI_BATCH_SIZE = 100;
+	public static final int DEFAULT_MAX_IN_FLIGHT_OPERATIONS = 32;
+	// HTTP, HTTPS, management HTTP, management HTTPS, native management of EAP 6
+	private static final int[] ALLOCATED_PORTS = {8080, 8443, 9990, 9993, 9999};
+	// Modules and binaries are shared from distribution, lib of base directory is linked
+	private static final List<String> CLONED_BASE_DIRS = Arrays.asList("configuration", "data", "deployments");
+	private static final List<String> EMPTY_BASE_DIRS = Arrays.asList("log", "tmp");
 
 	@Getter
 	protected final int portOffset;
@@ -39,6 +48,10 @@ public class WildflyConfiguration extends JavaConfiguration {
 	protected final File baseDir;
 	protected final File script;
 	protected final String nodeName;
+	@Getter
+	protected final int cliBatchSize;
+	@Getter
+	protected final int maxInFlightOperations;
 
 	protected WildflyConfiguration(Builder<?> builder) {
 		super(builder);
@@ -48,6 +61,8 @@ public class WildflyConfiguration extends JavaConfiguration {
 		baseDir = builder.baseDir;
 		script = builder.script;
 		nodeName = builder.nodeName;
+		cliBatchSize = builder.cliBatchSize;
+		maxInFlightOperations = builder.maxInFlightOperations;
 		// Following environment property ensures that wildfly-modules process will be killed
 		// when container is stopped.
 		envProps.put("LAUNCH_JBOSS_IN_BACKGROUND", "true");
@@ -113,8 +128,11 @@ public class WildflyConfiguration extends JavaConfiguration {
 		protected String profile;
 		protected Mode mode;
 		protected File baseDir;
+		protected boolean cloneBaseDir;
 		protected File script;
 		protected String nodeName;
+		protected int cliBatchSize;
+		protected int maxInFlightOperations;
 
 		public Builder() {
 			super();
@@ -129,6 +147,8 @@ public class WildflyConfiguration extends JavaConfiguration {
 			profile("standalone.xml");
 			mode(Mode.STANDALONE);
 			logFileName("server.log");
+			cliBatchSize(DEFAULT_CLI_BATCH_SIZE);
+			maxInFlightOperations(DEFAULT_MAX_IN_FLIGHT_OPERATIONS);
 		}
 
 		public T portOffset(int portOffset) {
@@ -141,6 +161,16 @@ public class WildflyConfiguration extends JavaConfiguration {
 			return self();
 		}
 
+		/**
+		 * Base directory is cloned from the distribution when configuration is built, see {@link DirectoryCloner}.
+		 * Several instances can run from one distribution this way.
+		 */
+		public T cloneBaseDir(File baseDir) {
+			this.baseDir = baseDir;
+			this.cloneBaseDir = true;
+			return self();
+		}
+
 		public T profile(String profile) {
 			this.profile = profile;
 			return self();
@@ -156,6 +186,22 @@ public class WildflyConfiguration extends JavaConfiguration {
 			return self();
 		}
 
+		/**
+		 * Maximal number of CLI operations sent by client as one composite operation, 1 disables batching.
+		 */
+		public T cliBatchSize(int cliBatchSize) {
+			this.cliBatchSize = cliBatchSize;
+			return self();
+		}
+
+		/**
+		 * Maximal number of asynchronous operations sent by client without reply.
+		 */
+		public T maxInFlightOperations(int maxInFlightOperations) {
+			this.maxInFlightOperations = maxInFlightOperations;
+			return self();
+		}
+
 		public T nodeName(String nodeName) {
 			this.nodeName = nodeName;
 			return self();
@@ -171,6 +217,13 @@ public class WildflyConfiguration extends JavaConfiguration {
 						+ (SystemUtils.IS_OS_WINDOWS ? "domain.bat" : "domain.sh"));
 			}
 
+			if (allocatePortLease(ALLOCATED_PORTS) != null) {
+				portOffset(portLease.getOffset());
+			}
+			if (cloneBaseDir) {
+				DirectoryCloner.clone(new File(directory, mode.getValue()), baseDir, CLONED_BASE_DIRS, EMPTY_BASE_DIRS);
+				cloneBaseDir = false;
+			}
 			if (baseDir != null) {
 				replaceJavaOptIfExists("-Djboss.server.base.dir=", baseDir.toString());
 			}
@@ -21,14 +21,27 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.SystemUtils;
 
 import org.jboss.qa.jcontainer.AbstractContainer;
+import org.jboss.qa.jcontainer.readiness.LogMarkerReadinessCheck;
+import org.jboss.qa.jcontainer.readiness.ReadinessCheck;
 import org.jboss.qa.jcontainer.util.ProcessUtils;
 import org.jboss.qa.jcontainer.wildfly.utils.CoreUtils;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
 
 public class WildflyContainer<T extends WildflyConfiguration, U extends WildflyClient<T>, V extends WildflyUser>
 		extends AbstractContainer<T, U, V> {
 
+	// WFLYSRV0025/JBAS015874 - started, WFLYSRV0026/JBAS015875 - started with errors
+	private static final Pattern STARTED_LOG_PATTERN = Pattern.compile("WFLYSRV002[56]|JBAS01587[45]");
+
+	private volatile ServerStateReadinessCheck serverStateCheck;
+
 	public WildflyContainer(T configuration) {
 		super(configuration);
 	}
@@ -71,7 +84,7 @@ public class WildflyContainer<T extends WildflyConfiguration, U extends WildflyC
 		if (SystemUtils.IS_OS_WINDOWS) { // JDK-4770092 - http://goo.gl/Aqc9cl
 			addShutdownHook(new Thread(new Runnable() {
 				public void run() {
-					ProcessUtils.killJavaByContainerId(getId());
+					ProcessUtils.killJavaByContainerId(getId(), configuration);
 				}
 			}));
 		}
@@ -81,14 +94,48 @@ public class WildflyContainer<T extends WildflyConfiguration, U extends WildflyC
 			final String parentPid = ProcessUtils.getParentPidOfPid(pid);
 			addShutdownHook(new Thread(new Runnable() {
 				public void run() {
-					ProcessUtils.killAllJavaContainerProcesses(getId(), pid, parentPid);
+					ProcessUtils.killAllJavaContainerProcesses(getId(), pid, parentPid, configuration);
 				}
 			}));
 		}
 	}
 
+	@Override
+	protected Pattern getStartedLogPattern() {
+		return STARTED_LOG_PATTERN;
+	}
+
+	/**
+	 * Container is ready when management interface reports that server was booted, open port is not enough.
+	 */
+	@Override
+	protected List<ReadinessCheck> createReadinessChecks() {
+		serverStateCheck = new ServerStateReadinessCheck(client.getProtocolName(), configuration.getHost(),
+				configuration.getManagementPort());
+		final List<ReadinessCheck> checks = new ArrayList<>();
+		checks.add(serverStateCheck);
+		checks.add(new LogMarkerReadinessCheck(getStartedLogFile(), getStartedLogPattern()));
+		return checks;
+	}
+
+	/**
+	 * Returns boot errors reported by server when it was started, empty list if there were none.
+	 */
+	public List<String> getBootErrors() {
+		final ServerStateReadinessCheck check = serverStateCheck;
+		return check == null ? Collections.<String>emptyList() : check.getBootErrors();
+	}
+
 	@Override
 	public File getLogDirInternal() {
-		return new File(CoreUtils.getSystemProperty(client, "jboss.server.log.dir"));
+		return new File(getSystemProperty("jboss.server.log.dir"));
+	}
+
+	/**
+	 * All system properties are read by one management operation.
+	 */
+	@Override
+	protected Map<String, String> resolveSystemProperties(Collection<String> names) throws Exception {
+		return CoreUtils.getSystemProperties(client);
 	}
 }
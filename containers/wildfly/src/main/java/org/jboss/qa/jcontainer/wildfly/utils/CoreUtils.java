@@ -15,8 +15,12 @@
  */
 package org.jboss.qa.jcontainer.wildfly.utils;
 
+import org.jboss.dmr.ModelNode;
 import org.jboss.qa.jcontainer.wildfly.WildflyClient;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -33,6 +37,20 @@ public final class CoreUtils {
 		}
 	}
 
+	/**
+	 * Returns all system properties of server JVM by one management operation.
+	 */
+	public static Map<String, String> getSystemProperties(WildflyClient<?> client) throws Exception {
+		client.execute("/core-service=platform-mbean/type=runtime:read-attribute(name=system-properties)");
+		client.getCommandResult().assertSuccess();
+		final ModelNode result = client.getCommandResult().get("result");
+		final Map<String, String> properties = new HashMap<>();
+		for (String name : result.keys()) {
+			properties.put(name, result.get(name).asString());
+		}
+		return properties;
+	}
+
 	private CoreUtils() {
 	}
 }
@@ -31,9 +31,13 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import org.wildfly.extras.creaper.core.online.ModelNodeResult;
+
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -131,6 +135,47 @@ public class WildflyContainerTest extends ContainerTest {
 		client.getCommandResult().assertFailed();
 	}
 
+	@Test
+	public void compositeOperationsTest() throws Exception {
+		final WildflyClient<?> client = (WildflyClient<?>) container.getClient();
+		final List<String> cmds = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			cmds.add(String.format("/system-property=%s-%d:add(value=%s)", PROP_NAME, i, PROP_VAL));
+		}
+		cmds.add("echo properties were added");
+		for (int i = 0; i < 5; i++) {
+			cmds.add(String.format("/system-property=%s-%d:remove", PROP_NAME, i));
+		}
+		client.execute(cmds);
+		final List<ModelNodeResult> results = client.getCommandResults();
+		Assert.assertEquals(cmds.size(), results.size());
+		results.get(0).assertSuccess();
+		Assert.assertNull(results.get(5));
+		results.get(10).assertSuccess();
+	}
+
+	@Test
+	public void asyncOperationsTest() throws Exception {
+		final WildflyClient<?> client = (WildflyClient<?>) container.getClient();
+		final List<CompletableFuture<ModelNodeResult>> futures = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			futures.add(client.executeAsync("/core-service=platform-mbean/type=runtime:read-attribute(name=uptime)"));
+		}
+		for (CompletableFuture<ModelNodeResult> future : futures) {
+			future.get(1, TimeUnit.MINUTES).assertSuccess();
+		}
+		client.executeAsync(BAD_RESULT_CMD).get(1, TimeUnit.MINUTES).assertFailed();
+	}
+
+	@Test
+	public void streamedOutputTest() throws Exception {
+		final WildflyClient<?> client = (WildflyClient<?>) container.getClient();
+		final List<String> lines = new ArrayList<>();
+		client.execute("/subsystem=logging:read-resource(recursive=true)", lines::add);
+		Assert.assertTrue(lines.size() > 1);
+		Assert.assertTrue(lines.get(1).contains("\"outcome\" => \"success\""));
+	}
+
 	@Test
 	public void executeFileTest() throws Exception {
 		final WildflyClient client = (WildflyClient) container.getClient();
@@ -147,6 +192,11 @@ public class WildflyContainerTest extends ContainerTest {
 		}
 	}
 
+	@Test
+	public void bootErrorsTest() throws Exception {
+		Assert.assertTrue(((WildflyContainer<?, ?, ?>) container).getBootErrors().isEmpty());
+	}
+
 	@Test
 	public void defaultLogFileTest() throws Exception {
 		Assert.assertTrue(container.getDefaultLogFile().exists());
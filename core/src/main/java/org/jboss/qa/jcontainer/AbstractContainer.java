@@ -15,19 +15,42 @@
  */
 package org.jboss.qa.jcontainer;
 
-import org.jboss.qa.jcontainer.util.ProcessUtils;
+import org.apache.commons.io.output.TeeOutputStream;
+
+import org.jboss.qa.jcontainer.readiness.LogMarkerReadinessCheck;
+import org.jboss.qa.jcontainer.readiness.ReadinessCheck;
+import org.jboss.qa.jcontainer.readiness.ReadinessWaiter;
+import org.jboss.qa.jcontainer.readiness.SocketReadinessCheck;
+import org.jboss.qa.jcontainer.util.LogIndex;
+import org.jboss.qa.jcontainer.util.LogTail;
+import org.jboss.qa.jcontainer.util.ProcessDiscovery;
 import org.jboss.qa.jcontainer.util.ReflectionUtils;
 import org.jboss.qa.jcontainer.util.executor.ProcessBuilderExecutor;
+import org.jboss.qa.jcontainer.util.executor.RingBufferOutputStream;
+import org.jboss.qa.jcontainer.util.executor.RotatingFileOutputStream;
+import org.jboss.qa.jcontainer.util.executor.SharedExecutor;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -35,13 +58,22 @@ import lombok.extern.slf4j.Slf4j;
 public abstract class AbstractContainer<T extends JavaConfiguration, U extends Client<T>, V extends User> implements Container<T, U, V> {
 
 	public static final String JCONTAINER_ID = "jcontainer.id";
+	public static final long START_TIMEOUT = TimeUnit.SECONDS.toMillis(150);
+	public static final long CLIENT_TIMEOUT = TimeUnit.SECONDS.toMillis(100);
 	private final long id;
 	private final File stdoutLogFile;
+	private final RingBufferOutputStream consoleBuffer;
 	protected T configuration;
 	protected U client;
 	private Class<T> confClass;
 	private Class<U> clientClass;
 	private volatile List<Thread> shutdownHooks = new ArrayList<>();
+	private List<ReadinessCheck> readinessChecks;
+	private final Map<File, LogIndex> logIndexes = new ConcurrentHashMap<>();
+	private long startTimestamp;
+	private volatile long startupTime = -1;
+	private CompletableFuture<Void> asyncStart;
+	private volatile StartScope startScope = new StartScope();
 
 	public AbstractContainer(T configuration) {
 		id = System.nanoTime();
@@ -50,6 +82,7 @@ public abstract class AbstractContainer<T extends JavaConfiguration, U extends C
 		clientClass = ReflectionUtils.getGenericClass(getClass(), 1);
 		this.configuration = configuration;
 		client = createClient(configuration);
+		consoleBuffer = configuration.getStdoutBufferSize() > 0 ? new RingBufferOutputStream(configuration.getStdoutBufferSize()) : null;
 		log.info("container id = {}", id);
 	}
 
@@ -61,6 +94,26 @@ public abstract class AbstractContainer<T extends JavaConfiguration, U extends C
 		return stdoutLogFile;
 	}
 
+	/**
+	 * Returns recent console output of container kept in memory, at most
+	 * {@link Configuration#getStdoutBufferSize()} bytes. It is empty if console is not kept.
+	 */
+	public String getConsoleOutput() {
+		return consoleBuffer == null ? "" : consoleBuffer.toString(Charset.defaultCharset());
+	}
+
+	private String withConsoleOutput(String message) {
+		final String console = getConsoleOutput();
+		return console.isEmpty() ? message : String.format("%s, recent console output:%n%s", message, console);
+	}
+
+	/**
+	 * Returns time in milliseconds between launching of container process and its readiness, -1 if container was not started.
+	 */
+	public long getStartupTime() {
+		return startupTime;
+	}
+
 	/**
 	 * Returns command, which can be used by client.
 	 *
@@ -69,14 +122,72 @@ public abstract class AbstractContainer<T extends JavaConfiguration, U extends C
 	protected abstract String getBasicCommand();
 
 	/**
-	 * Returns log directory.
+	 * Returns log directory, it is resolved once per start of container.
 	 */
 	public File getLogDir() {
-		try {
-			return getLogDirInternal();
-		} catch (Exception e) {
-			throw new IllegalStateException("Log directory was not found", e);
+		final StartScope scope = startScope;
+		File logDir = scope.logDir;
+		if (logDir == null) {
+			try {
+				logDir = getLogDirInternal();
+				if (isRunning()) {
+					scope.logDir = logDir;
+				}
+			} catch (Exception e) {
+				throw new IllegalStateException("Log directory was not found", e);
+			}
 		}
+		return logDir;
+	}
+
+	/**
+	 * Returns value of system property of running container, NULL if it is not defined.
+	 */
+	public String getSystemProperty(String name) {
+		return getSystemProperties(Collections.singletonList(name)).get(name);
+	}
+
+	/**
+	 * Returns values of system properties of running container, values of undefined properties are NULL.
+	 * Properties which are not cached are resolved by one request to container and cached until container is stopped.
+	 */
+	public Map<String, String> getSystemProperties(Collection<String> names) {
+		final StartScope scope = startScope;
+		final Map<String, String> values = new HashMap<>();
+		final List<String> unresolved = new ArrayList<>();
+		for (String name : names) {
+			final String value = scope.systemProperties.get(name);
+			if (value != null) {
+				values.put(name, value);
+			} else {
+				unresolved.add(name);
+			}
+		}
+		if (!unresolved.isEmpty()) {
+			try {
+				final Map<String, String> resolved = resolveSystemProperties(unresolved);
+				if (isRunning()) {
+					for (Map.Entry<String, String> property : resolved.entrySet()) {
+						if (property.getValue() != null) {
+							scope.systemProperties.put(property.getKey(), property.getValue());
+						}
+					}
+				}
+				for (String name : unresolved) {
+					values.put(name, resolved.get(name));
+				}
+			} catch (Exception e) {
+				throw new IllegalStateException("System properties were not resolved", e);
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Resolves system properties by one request to container, result can contain also other than requested properties.
+	 */
+	protected Map<String, String> resolveSystemProperties(Collection<String> names) throws Exception {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support resolving of system properties");
 	}
 
 	/**
@@ -90,8 +201,73 @@ public abstract class AbstractContainer<T extends JavaConfiguration, U extends C
 		return logFile;
 	}
 
+	/**
+	 * Returns tail of default log file which reads only lines appended after this call, e.g. to wait for a message
+	 * caused by an action. Rotated log files are followed.
+	 */
+	public LogTail tailLog() {
+		return new LogTail(this::getDefaultLogFile, Charset.defaultCharset(), false);
+	}
+
+	/**
+	 * Returns reader of default log file from its beginning, it remembers its offset same as {@link #tailLog()}.
+	 */
+	public LogTail readLog() {
+		return new LogTail(this::getDefaultLogFile, Charset.defaultCharset(), true);
+	}
+
+	/**
+	 * Returns index of default log file, lines appended since the last call are indexed, see {@link LogIndex}.
+	 */
+	public LogIndex indexDefaultLog() throws IOException {
+		return indexLog(getDefaultLogFile());
+	}
+
+	/**
+	 * Returns index of console log file, lines appended since the last call are indexed, see {@link LogIndex}.
+	 */
+	public LogIndex indexStdoutLog() throws IOException {
+		return indexLog(getStdoutLogFile());
+	}
+
+	private LogIndex indexLog(File file) throws IOException {
+		LogIndex index = logIndexes.get(file);
+		if (index == null) {
+			logIndexes.putIfAbsent(file, new LogIndex(file));
+			index = logIndexes.get(file);
+		}
+		return index.update();
+	}
+
 	protected abstract File getLogDirInternal();
 
+	/**
+	 * Returns pattern of log line which signals that container was started, NULL if it is not supported.
+	 */
+	protected Pattern getStartedLogPattern() {
+		return null;
+	}
+
+	/**
+	 * Returns file which is watched for {@link #getStartedLogPattern()}.
+	 */
+	protected File getStartedLogFile() {
+		return getStdoutLogFile();
+	}
+
+	/**
+	 * Returns checks of container readiness. Container is started as soon as the first of them is ready.
+	 */
+	protected List<ReadinessCheck> createReadinessChecks() {
+		final List<ReadinessCheck> checks = new ArrayList<>();
+		final Pattern startedLogPattern = getStartedLogPattern();
+		if (startedLogPattern != null) {
+			checks.add(new LogMarkerReadinessCheck(getStartedLogFile(), startedLogPattern));
+		}
+		checks.add(new SocketReadinessCheck(configuration.getHost(), configuration.getBusyPort()));
+		return checks;
+	}
+
 	protected void addShutdownHook(Thread hook) {
 		shutdownHooks.add(hook);
 		Runtime.getRuntime().addShutdownHook(hook);
@@ -103,6 +279,59 @@ public abstract class AbstractContainer<T extends JavaConfiguration, U extends C
 			log.warn("Container is already started");
 			return;
 		}
+		startScope = new StartScope();
+		final Process process;
+		try {
+			process = launch(createProcessBuilder());
+		} catch (Exception e) {
+			// Lease is released by stop, which does nothing until the process is launched
+			releasePortLease();
+			throw e;
+		}
+
+		addShutdownHook(new Thread(new Runnable() {
+			@Override
+			public void run() {
+				if (process != null) {
+					process.destroy();
+					try {
+						process.waitFor();
+					} catch (InterruptedException e) {
+						log.debug("Container stop process was interrupted!");
+						log.trace(e.getMessage(), e);
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+		}));
+		// This shutdown hook wait until container process exists.
+		addShutdownHook(new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					ProcessDiscovery.onContainerExit(getId()).get();
+				} catch (ExecutionException e) {
+					log.error(e.getMessage(), e);
+				} catch (InterruptedException e) {
+					log.trace(e.getMessage(), e);
+					Thread.currentThread().interrupt();
+				} finally {
+					ProcessDiscovery.evict(getId());
+				}
+			}
+		}));
+		if (asyncStart != null) {
+			awaitStarted(asyncStart);
+		} else {
+			waitForStarted();
+		}
+	}
+
+	/**
+	 * Checks that container can be started and prepares its process, readiness checks are created before the process
+	 * is launched, so log markers of previous runs are ignored.
+	 */
+	private ProcessBuilder createProcessBuilder() throws Exception {
 		if (checkSocket()) {
 			throw new IllegalStateException(String.format("Another container already uses %s:%d",
 					configuration.getHost(), configuration.getBusyPort()));
@@ -127,64 +356,136 @@ public abstract class AbstractContainer<T extends JavaConfiguration, U extends C
 		javaOpts.append(String.format(" -D%s=%s", JCONTAINER_ID, id));
 		processBuilder.environment().put(configuration.getJavaOptsEnvName(), javaOpts.toString());
 
-		final Process process = ProcessBuilderExecutor.asyncExecute(processBuilder, getStdoutLogFile());
+		readinessChecks = createReadinessChecks();
+		startupTime = -1;
+		startTimestamp = System.currentTimeMillis();
+		if (configuration.getPortLease() != null) {
+			configuration.getPortLease().acquire();
+		}
+		return processBuilder;
 
-		addShutdownHook(new Thread(new Runnable() {
+	}
+
+	/**
+	 * Launches container process. Console is redirected into the file by operating system unless it is rotated
+	 * or kept in memory, it is copied by dedicated thread then, see {@link SharedExecutor#pump(Runnable)}.
+	 */
+	private Process launch(ProcessBuilder processBuilder) throws IOException, InterruptedException {
+		if (consoleBuffer == null && !configuration.isStdoutRotated()) {
+			return ProcessBuilderExecutor.asyncExecute(processBuilder, getStdoutLogFile());
+		}
+		OutputStream out = configuration.isStdoutRotated()
+				? new RotatingFileOutputStream(getStdoutLogFile(), configuration.getStdoutMaxSize(), configuration.getStdoutMaxAge(),
+						configuration.getStdoutRetention())
+				: new FileOutputStream(getStdoutLogFile());
+		if (consoleBuffer != null) {
+			consoleBuffer.reset();
+			out = new TeeOutputStream(out, consoleBuffer);
+		}
+		return ProcessBuilderExecutor.asyncExecute(processBuilder, out, configuration.getStdoutCopyBufferSize());
+	}
+
+	/**
+	 * Starts container, returned future is completed when container is ready. Container process is launched on
+	 * {@link SharedExecutor} and readiness is polled without blocking any thread.
+	 */
+	public CompletableFuture<Void> startAsync() {
+		final CompletableFuture<Void> started = new CompletableFuture<>();
+		SharedExecutor.execute(new Runnable() {
 			@Override
 			public void run() {
-				if (process != null) {
-					process.destroy();
+				synchronized (AbstractContainer.this) {
 					try {
-						process.waitFor();
-					} catch (InterruptedException e) {
-						log.debug("Container stop process was interrupted!");
-						log.trace(e.getMessage(), e);
-						Thread.currentThread().interrupt();
+						if (isRunning()) {
+							log.warn("Container is already started");
+							started.complete(null);
+							return;
+						}
+						asyncStart = started;
+						start();
+					} catch (Exception e) {
+						started.completeExceptionally(e);
+					} finally {
+						asyncStart = null;
 					}
 				}
 			}
-		}));
-		// This shutdown hook wait until container process exists.
-		addShutdownHook(new Thread(new Runnable() {
-			@Override
-			public void run() {
-				try {
-					String pid;
-					while ((pid = ProcessUtils.getJavaPidByContainerId(getId())) != null) {
-						log.debug("Stopping container (PID {}) ...", pid);
-						Thread.sleep(TimeUnit.SECONDS.toMillis(1));
-					}
-				} catch (InterruptedException e) {
-					log.trace(e.getMessage(), e);
-					Thread.currentThread().interrupt();
-				}
-			}
-		}));
-		waitForStarted();
+		});
+		return started;
 	}
 
 	public synchronized void stop(long timeout, TimeUnit timeUnit) throws Exception {
-		if (isRunning()) {
-			client.close();
-			final ExecutorService service = Executors.newCachedThreadPool();
-			final List<Future> futures = new ArrayList<>();
-			for (Thread shutdownHook : shutdownHooks) {
-				Runtime.getRuntime().removeShutdownHook(shutdownHook);
-				futures.add(service.submit(shutdownHook));
+		try {
+			stopAsync(timeout, timeUnit).get();
+		} catch (ExecutionException e) {
+			if (!(e.getCause() instanceof TimeoutException)) {
+				throw e;
 			}
-			service.shutdown();
-			if (!service.awaitTermination(timeout, timeUnit)) {
-				for (Future future : futures) {
-					future.cancel(true);
+			log.warn("Container shutdown process didn't finish in {} {}! {}", timeout, timeUnit, e.getCause().getMessage());
+		}
+	}
+
+	/**
+	 * Stops container, returned future is completed when all shutdown hooks finish. Hooks are cancelled and the future
+	 * is completed with {@link TimeoutException} if they do not finish in timeout, its message contains recent
+	 * console output of container.
+	 */
+	public synchronized CompletableFuture<Void> stopAsync(long timeout, TimeUnit timeUnit) throws Exception {
+		if (!isRunning()) {
+			return CompletableFuture.completedFuture(null);
+		}
+		startScope = new StartScope();
+		client.close();
+		final List<Future<?>> tasks = new ArrayList<>();
+		final List<CompletableFuture<Void>> hooks = new ArrayList<>();
+		for (Thread shutdownHook : shutdownHooks) {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+			hooks.add(runShutdownHook(shutdownHook, tasks));
+		}
+		shutdownHooks.clear();
+		final CompletableFuture<Void> stopped = ProcessDiscovery.withTimeout(
+				CompletableFuture.allOf(hooks.toArray(new CompletableFuture[hooks.size()])), timeout, timeUnit);
+		return stopped.handle((v, e) -> {
+			if (e instanceof TimeoutException) {
+				for (Future<?> task : tasks) {
+					task.cancel(true);
 				}
-				log.warn("Container shutdown process didn't finish in {} {}!", timeout, timeUnit);
 			} else {
 				log.info("Container was stopped");
 			}
-			shutdownHooks.clear();
+			releasePortLease();
+			if (e instanceof TimeoutException) {
+				throw new CompletionException(new TimeoutException(withConsoleOutput(e.getMessage())));
+			} else if (e != null) {
+				throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+			}
+			return null;
+		});
+	}
+
+	private void releasePortLease() {
+		if (configuration.getPortLease() != null) {
+			configuration.getPortLease().release();
 		}
 	}
 
+	private static CompletableFuture<Void> runShutdownHook(final Thread shutdownHook, List<Future<?>> tasks) {
+		final CompletableFuture<Void> finished = new CompletableFuture<>();
+		tasks.add(SharedExecutor.submit(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					shutdownHook.run();
+				} catch (RuntimeException e) {
+					log.error(e.getMessage(), e);
+				} finally {
+					finished.complete(null);
+				}
+			}
+		}));
+		return finished;
+	}
+
 	@Override
 	public synchronized void stop() throws Exception {
 		stop(1, TimeUnit.MINUTES);
@@ -205,37 +506,98 @@ public abstract class AbstractContainer<T extends JavaConfiguration, U extends C
 	}
 
 	protected synchronized void waitForStarted() throws InterruptedException {
-		int attempts = 30;
-		while (!checkSocket()) {
-			if (--attempts <= 0) {
-				throw new IllegalStateException("Container was not started");
-			}
-			wait(TimeUnit.SECONDS.toMillis(5));
-			log.info("Waiting for container...");
+		try {
+			ReadinessWaiter.builder().checks(readinessChecks).timeout(START_TIMEOUT).build().await();
+		} catch (TimeoutException e) {
+			throw new IllegalStateException(withConsoleOutput("Container was not started"), e);
+		} finally {
+			closeReadinessChecks();
 		}
 		checkClient();
-		log.info("Container was started");
+		markStarted();
 	}
 
-	public void checkClient() {
-		if (isClientSupported()) {
-			final int clientAttempts = 20;
-			final String basicCommand = getBasicCommand();
-			for (int i = 0; i < clientAttempts; i++) {
+	private void awaitStarted(final CompletableFuture<Void> started) {
+		ReadinessWaiter.builder().checks(readinessChecks).timeout(START_TIMEOUT).build().awaitAsync()
+				.exceptionally(e -> {
+					throw new CompletionException(new IllegalStateException(withConsoleOutput("Container was not started"), e));
+				})
+				.thenCompose(check -> checkClientAsync())
+				.whenComplete((v, e) -> {
+					closeReadinessChecks();
+					if (e == null) {
+						markStarted();
+						started.complete(null);
+					} else {
+						started.completeExceptionally(e instanceof CompletionException ? e.getCause() : e);
+					}
+				});
+	}
+
+	/**
+	 * Releases resources of checks, e.g. connections which were reused by their polls.
+	 */
+	private void closeReadinessChecks() {
+		for (ReadinessCheck check : readinessChecks) {
+			if (check instanceof Closeable) {
 				try {
-					Thread.sleep(TimeUnit.SECONDS.toMillis(5));
-					client.execute(basicCommand);
-					log.debug("Client was connected to container");
-					return;
-				} catch (Exception e) {
-					log.debug("Waiting for client...");
+					((Closeable) check).close();
+				} catch (IOException e) {
 					log.trace(e.getMessage(), e);
 				}
 			}
-			throw new IllegalStateException("Client was not connected to container");
 		}
 	}
 
+	private void markStarted() {
+		startupTime = System.currentTimeMillis() - startTimestamp;
+		log.info("Container was started in {} ms", startupTime);
+	}
+
+	public void checkClient() {
+		if (isClientSupported()) {
+			try {
+				createClientWaiter().await();
+				log.debug("Client was connected to container");
+			} catch (TimeoutException e) {
+				throw new IllegalStateException(withConsoleOutput("Client was not connected to container"), e);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Waiting for client was interrupted", e);
+			}
+		}
+	}
+
+	private CompletableFuture<Void> checkClientAsync() {
+		if (!isClientSupported()) {
+			return CompletableFuture.completedFuture(null);
+		}
+		return createClientWaiter().awaitAsync().handle((check, e) -> {
+			if (e != null) {
+				throw new CompletionException(new IllegalStateException(withConsoleOutput("Client was not connected to container"), e));
+			}
+			log.debug("Client was connected to container");
+			return null;
+		});
+	}
+
+	private ReadinessWaiter createClientWaiter() {
+		final String basicCommand = getBasicCommand();
+		final ReadinessCheck clientCheck = new ReadinessCheck() {
+			@Override
+			public boolean isReady() throws Exception {
+				client.execute(basicCommand);
+				return true;
+			}
+
+			@Override
+			public String toString() {
+				return String.format("client command '%s'", basicCommand);
+			}
+		};
+		return ReadinessWaiter.builder().check(clientCheck).maxInterval(TimeUnit.SECONDS.toMillis(5)).timeout(CLIENT_TIMEOUT).build();
+	}
+
 	@Override
 	public boolean isClientSupported() {
 		return getBasicCommand() != null;
@@ -275,4 +637,12 @@ public abstract class AbstractContainer<T extends JavaConfiguration, U extends C
 			throw new IllegalArgumentException(String.format("Property '%s' is mandatory", name));
 		}
 	}
+
+	/**
+	 * Values resolved from running container, scope is replaced when container is started or stopped.
+	 */
+	private static final class StartScope {
+		private final Map<String, String> systemProperties = new ConcurrentHashMap<>();
+		private volatile File logDir;
+	}
 }
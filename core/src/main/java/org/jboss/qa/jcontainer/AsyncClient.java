@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer;
+
+import org.jboss.qa.jcontainer.util.executor.SharedExecutor;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Asynchronous facade of {@link Client}. Commands are executed on {@link SharedExecutor} in order of submission,
+ * because clients are not thread safe.
+ */
+public class AsyncClient {
+
+	private final Client<?> client;
+	private CompletableFuture<Void> last = CompletableFuture.completedFuture(null);
+
+	public AsyncClient(Client<?> client) {
+		this.client = client;
+	}
+
+	public Client<?> getClient() {
+		return client;
+	}
+
+	public CompletableFuture<Void> execute(final String command) {
+		return enqueue(() -> client.execute(command));
+	}
+
+	/**
+	 * Consumer is called by thread of {@link SharedExecutor}.
+	 */
+	public CompletableFuture<Void> execute(final String command, final Consumer<String> lineConsumer) {
+		return enqueue(() -> client.execute(command, lineConsumer));
+	}
+
+	public CompletableFuture<Void> execute(final List<String> commands) {
+		return enqueue(() -> client.execute(commands));
+	}
+
+	public CompletableFuture<Void> execute(final File file) {
+		return enqueue(() -> client.execute(file));
+	}
+
+	private synchronized CompletableFuture<Void> enqueue(final Command command) {
+		final CompletableFuture<Void> result = new CompletableFuture<>();
+		last.whenComplete((v, e) -> SharedExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					command.execute();
+					result.complete(null);
+				} catch (Exception ex) {
+					result.completeExceptionally(ex);
+				}
+			}
+		}));
+		last = result;
+		return result;
+	}
+
+	private interface Command {
+		void execute() throws Exception;
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous facade of {@link AbstractContainer}. Futures are completed by readiness checks and shutdown events,
+ * so one thread can supervise many containers.
+ *
+ * @param <C> type of container
+ */
+public class AsyncContainer<C extends AbstractContainer<?, ?, ?>> {
+
+	private final C container;
+	private final AsyncClient client;
+
+	public AsyncContainer(C container) {
+		this.container = container;
+		client = new AsyncClient(container.getClient());
+	}
+
+	public C getContainer() {
+		return container;
+	}
+
+	public AsyncClient getClient() {
+		return client;
+	}
+
+	/**
+	 * Starts container, returned future is completed when container is ready.
+	 */
+	public CompletableFuture<C> start() {
+		return container.startAsync().thenApply(v -> container);
+	}
+
+	/**
+	 * Stops container, returned future is completed when container processes exit.
+	 */
+	public CompletableFuture<Void> stop(long timeout, TimeUnit unit) {
+		try {
+			return container.stopAsync(timeout, unit);
+		} catch (Exception e) {
+			return failed(e);
+		}
+	}
+
+	/**
+	 * Executes command by client of container, returned future fails if client is not supported.
+	 */
+	public CompletableFuture<Void> execute(String command) {
+		if (!container.isClientSupported()) {
+			return failed(new UnsupportedOperationException("Client is not supported"));
+		}
+		return client.execute(command);
+	}
+
+	private static <T> CompletableFuture<T> failed(Exception e) {
+		final CompletableFuture<T> failed = new CompletableFuture<>();
+		failed.completeExceptionally(e);
+		return failed;
+	}
+}
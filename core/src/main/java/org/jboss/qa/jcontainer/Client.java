@@ -21,6 +21,7 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.function.Consumer;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -60,6 +61,22 @@ public abstract class Client<T extends Configuration> implements Closeable {
 		executeInternal(command);
 	}
 
+	/**
+	 * Executes command and passes its output line by line to consumer, the output is not kept by client.
+	 * Consumer is called by the calling thread and the output is not read faster than consumer accepts it.
+	 */
+	public void execute(String command, Consumer<String> lineConsumer) throws Exception {
+		log.info("Execute command: {}", command);
+		if (!isConnected()) {
+			connect();
+		}
+		executeInternal(command, lineConsumer);
+	}
+
+	protected void executeInternal(String command, Consumer<String> lineConsumer) throws Exception {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support streaming of output");
+	}
+
 	public void execute(List<String> commands) throws Exception {
 		log.info("Execute commands:");
 		int i = 1;
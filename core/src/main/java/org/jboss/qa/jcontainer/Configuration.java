@@ -15,6 +15,9 @@
  */
 package org.jboss.qa.jcontainer;
 
+import org.jboss.qa.jcontainer.util.PortAllocator;
+import org.jboss.qa.jcontainer.util.executor.ProcessExecutor;
+
 import java.io.File;
 import java.util.Arrays;
 import java.util.Collection;
@@ -26,6 +29,8 @@ import java.util.Set;
 
 public abstract class Configuration {
 
+	public static final int DEFAULT_STDOUT_RETENTION = 5;
+
 	protected final File directory;
 	protected final String host;
 	protected final Integer port;
@@ -34,6 +39,12 @@ public abstract class Configuration {
 	protected final String logFileName;
 	protected final Set<String> params;
 	protected final Map<String, String> envProps;
+	protected final PortAllocator.Lease portLease;
+	protected final long stdoutMaxSize;
+	protected final long stdoutMaxAge;
+	protected final int stdoutRetention;
+	protected final int stdoutBufferSize;
+	protected final int stdoutCopyBufferSize;
 
 	protected Configuration(Builder<?> builder) {
 		// Mandatory properties
@@ -47,6 +58,12 @@ public abstract class Configuration {
 		directory = builder.directory; // Mandatory for container but not for standalone client.
 		params = builder.params;
 		envProps = builder.envProps;
+		portLease = builder.portLease;
+		stdoutMaxSize = builder.stdoutMaxSize;
+		stdoutMaxAge = builder.stdoutMaxAge;
+		stdoutRetention = builder.stdoutRetention;
+		stdoutBufferSize = builder.stdoutBufferSize;
+		stdoutCopyBufferSize = builder.stdoutCopyBufferSize;
 	}
 
 	protected void checkMandatoryProperty(String name, Object value) {
@@ -85,6 +102,49 @@ public abstract class Configuration {
 		return envProps;
 	}
 
+	/**
+	 * Returns allocated ports, NULL if ports were configured manually.
+	 */
+	public PortAllocator.Lease getPortLease() {
+		return portLease;
+	}
+
+	/**
+	 * Returns maximal size of console log file in bytes before it is rotated, 0 if it is not rotated by size.
+	 */
+	public long getStdoutMaxSize() {
+		return stdoutMaxSize;
+	}
+
+	/**
+	 * Returns maximal age of console log file in milliseconds before it is rotated, 0 if it is not rotated by age.
+	 */
+	public long getStdoutMaxAge() {
+		return stdoutMaxAge;
+	}
+
+	public int getStdoutRetention() {
+		return stdoutRetention;
+	}
+
+	/**
+	 * Returns number of bytes of recent console output kept in memory, 0 if it is not kept.
+	 */
+	public int getStdoutBufferSize() {
+		return stdoutBufferSize;
+	}
+
+	/**
+	 * Returns size of buffer used for copying of console output when it is not redirected by operating system.
+	 */
+	public int getStdoutCopyBufferSize() {
+		return stdoutCopyBufferSize;
+	}
+
+	public boolean isStdoutRotated() {
+		return stdoutMaxSize > 0 || stdoutMaxAge > 0;
+	}
+
 	public abstract List<String> generateCommand();
 
 	public abstract static class Builder<T extends Builder<T>> {
@@ -97,6 +157,13 @@ public abstract class Configuration {
 		protected String logFileName;
 		protected Set<String> params = new HashSet<>();
 		protected Map<String, String> envProps = new HashMap<>();
+		protected boolean allocatePorts;
+		protected PortAllocator.Lease portLease;
+		protected long stdoutMaxSize;
+		protected long stdoutMaxAge;
+		protected int stdoutRetention = DEFAULT_STDOUT_RETENTION;
+		protected int stdoutBufferSize;
+		protected int stdoutCopyBufferSize = ProcessExecutor.DEFAULT_BUFFER_SIZE;
 
 		public Builder() {
 			host("localhost");
@@ -163,5 +230,59 @@ public abstract class Configuration {
 			this.envProps.put(key, value);
 			return self();
 		}
+
+		/**
+		 * Ports are allocated by {@link PortAllocator} when configuration is built. Manually set ports are overridden.
+		 */
+		public T allocatePorts() {
+			this.allocatePorts = true;
+			return self();
+		}
+
+		/**
+		 * Console log file of container is rotated when it exceeds given size or age, rotated files are compressed
+		 * in background and only given number of them is kept. Console is copied by Java thread in this case
+		 * instead of being redirected into the file by operating system.
+		 *
+		 * @param maxSize maximal size in bytes, 0 means unlimited
+		 * @param maxAge maximal age in milliseconds, 0 means unlimited
+		 * @param retention number of kept rotated files
+		 */
+		public T stdoutRotation(long maxSize, long maxAge, int retention) {
+			this.stdoutMaxSize = maxSize;
+			this.stdoutMaxAge = maxAge;
+			this.stdoutRetention = retention;
+			return self();
+		}
+
+		/**
+		 * Recent console output of given size (e.g. 64 KB) is kept in memory and attached to start and stop failures,
+		 * it is not kept by default. Console is then copied into the file by dedicated thread
+		 * instead of being redirected by operating system.
+		 */
+		public T stdoutBufferSize(int stdoutBufferSize) {
+			this.stdoutBufferSize = stdoutBufferSize;
+			return self();
+		}
+
+		/**
+		 * Size of buffer used for copying of console output (64 KB by default), when it is rotated or kept in memory.
+		 */
+		public T stdoutCopyBufferSize(int stdoutCopyBufferSize) {
+			this.stdoutCopyBufferSize = stdoutCopyBufferSize;
+			return self();
+		}
+
+		/**
+		 * Allocates ports if it was requested and they were not allocated yet.
+		 *
+		 * @return allocated ports, NULL if allocation was not requested
+		 */
+		protected PortAllocator.Lease allocatePortLease(int... defaultPorts) {
+			if (allocatePorts && portLease == null) {
+				portLease = PortAllocator.allocate(defaultPorts);
+			}
+			return portLease;
+		}
 	}
 }
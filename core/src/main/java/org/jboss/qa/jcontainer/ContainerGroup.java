@@ -0,0 +1,207 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer;
+
+import org.jboss.qa.jcontainer.util.executor.SharedExecutor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Group of containers, which are started and stopped concurrently. Container is started when all its dependencies are
+ * started and it is stopped when all containers, which depend on it, are stopped.
+ */
+@Slf4j
+public class ContainerGroup implements Closeable {
+
+	private final Map<Container<?, ?, ?>, Set<Container<?, ?, ?>>> dependencies = new LinkedHashMap<>();
+
+	/**
+	 * Adds container into group.
+	 *
+	 * @param dependsOn containers, which have to be started before this container, they must be already added in group
+	 */
+	public synchronized ContainerGroup add(Container<?, ?, ?> container, Container<?, ?, ?>... dependsOn) {
+		if (dependencies.containsKey(container)) {
+			throw new IllegalArgumentException("Container is already in group");
+		}
+		for (Container<?, ?, ?> dependency : dependsOn) {
+			if (!dependencies.containsKey(dependency)) {
+				throw new IllegalArgumentException("Dependency must be added into group before container, which depends on it");
+			}
+		}
+		dependencies.put(container, new LinkedHashSet<>(Arrays.asList(dependsOn)));
+		return this;
+	}
+
+	public synchronized List<Container<?, ?, ?>> getContainers() {
+		return Collections.unmodifiableList(new ArrayList<>(dependencies.keySet()));
+	}
+
+	/**
+	 * Starts all containers. Method fails as soon as any container fails, containers which were not started yet are not started.
+	 * Containers which are being started are left running, use {@link #stop()} to stop them.
+	 *
+	 * @return start time in milliseconds of each container
+	 */
+	public synchronized Map<Container<?, ?, ?>, Long> start() throws Exception {
+		final Map<Container<?, ?, ?>, Long> times = new ConcurrentHashMap<>();
+		final Map<Container<?, ?, ?>, CompletableFuture<Void>> futures = new LinkedHashMap<>();
+		final AtomicBoolean aborted = new AtomicBoolean();
+		for (Map.Entry<Container<?, ?, ?>, Set<Container<?, ?, ?>>> entry : dependencies.entrySet()) {
+			final Container<?, ?, ?> container = entry.getKey();
+			futures.put(container, after(futures, entry.getValue()).thenRunAsync(() -> {
+				if (aborted.get()) {
+					throw new CancellationException("Start of group was aborted");
+				}
+				final long start = System.currentTimeMillis();
+				invoke(container, true);
+				times.put(container, System.currentTimeMillis() - start);
+			}, SharedExecutor::execute));
+		}
+		try {
+			await(futures.values());
+		} catch (Exception e) {
+			aborted.set(true);
+			throw e;
+		}
+		log.info("Group of {} containers was started", futures.size());
+		return ordered(times);
+	}
+
+	/**
+	 * Stops all containers. Failure of one container does not prevent stopping of others.
+	 *
+	 * @return stop time in milliseconds of each container
+	 */
+	public synchronized Map<Container<?, ?, ?>, Long> stop() throws Exception {
+		final Map<Container<?, ?, ?>, Long> times = new ConcurrentHashMap<>();
+		final Map<Container<?, ?, ?>, CompletableFuture<Void>> futures = new LinkedHashMap<>();
+		final List<Container<?, ?, ?>> reversed = new ArrayList<>(dependencies.keySet());
+		Collections.reverse(reversed);
+		for (final Container<?, ?, ?> container : reversed) {
+			final Set<Container<?, ?, ?>> dependents = new LinkedHashSet<>();
+			for (Map.Entry<Container<?, ?, ?>, Set<Container<?, ?, ?>>> entry : dependencies.entrySet()) {
+				if (entry.getValue().contains(container)) {
+					dependents.add(entry.getKey());
+				}
+			}
+			// Dependent containers are stopped even if they failed
+			final CompletableFuture<Void> dependentsStopped = after(futures, dependents).handle((v, e) -> null);
+			futures.put(container, dependentsStopped.thenRunAsync(() -> {
+				final long start = System.currentTimeMillis();
+				invoke(container, false);
+				times.put(container, System.currentTimeMillis() - start);
+			}, SharedExecutor::execute));
+		}
+		Exception failure = null;
+		for (CompletableFuture<Void> future : futures.values()) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				log.error(e.getCause().getMessage(), e.getCause());
+				failure = failure == null ? unwrap(e) : failure;
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+		log.info("Group of {} containers was stopped", futures.size());
+		return ordered(times);
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			stop();
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+	}
+
+	private static CompletableFuture<Void> after(Map<Container<?, ?, ?>, CompletableFuture<Void>> futures, Set<Container<?, ?, ?>> containers) {
+		final List<CompletableFuture<Void>> previous = new ArrayList<>();
+		for (Container<?, ?, ?> container : containers) {
+			previous.add(futures.get(container));
+		}
+		return CompletableFuture.allOf(previous.toArray(new CompletableFuture[previous.size()]));
+	}
+
+	private static void invoke(Container<?, ?, ?> container, boolean start) {
+		try {
+			if (start) {
+				container.start();
+			} else if (container.isRunning()) {
+				container.stop();
+			}
+		} catch (Exception e) {
+			throw new CompletionException(e);
+		}
+	}
+
+	private static void await(Iterable<CompletableFuture<Void>> futures) throws Exception {
+		final CompletableFuture<Void> failed = new CompletableFuture<>();
+		final List<CompletableFuture<Void>> all = new ArrayList<>();
+		for (CompletableFuture<Void> future : futures) {
+			future.whenComplete((v, e) -> {
+				if (e != null) {
+					failed.completeExceptionally(e);
+				}
+			});
+			all.add(future);
+		}
+		try {
+			// Fail fast - the first failure wins, other containers are not awaited
+			CompletableFuture.anyOf(failed, CompletableFuture.allOf(all.toArray(new CompletableFuture[all.size()]))).get();
+		} catch (ExecutionException e) {
+			throw unwrap(e);
+		}
+	}
+
+	private static Exception unwrap(ExecutionException e) {
+		Throwable cause = e.getCause();
+		while (cause instanceof CompletionException && cause.getCause() != null) {
+			cause = cause.getCause();
+		}
+		return cause instanceof Exception ? (Exception) cause : e;
+	}
+
+	private Map<Container<?, ?, ?>, Long> ordered(Map<Container<?, ?, ?>, Long> times) {
+		final Map<Container<?, ?, ?>, Long> result = new LinkedHashMap<>();
+		for (Container<?, ?, ?> container : dependencies.keySet()) {
+			if (times.containsKey(container)) {
+				result.put(container, times.get(container));
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer;
+
+import org.jboss.qa.jcontainer.util.executor.SharedExecutor;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pool of pre-started containers. Containers are leased to callers and returned back after use. Returned container is
+ * reset in background, if the reset is not possible or fails, container is recycled (stopped and replaced by new one).
+ * Containers created by factory must not collide with each other, e.g. use {@link Configuration.Builder#allocatePorts()}.
+ *
+ * @param <C> type of container
+ */
+@Slf4j
+public class ContainerPool<C extends Container<?, ?, ?>> implements Closeable {
+
+	private static final long RETRY_DELAY = TimeUnit.SECONDS.toMillis(5);
+
+	private final int size;
+	private final Factory<C> factory;
+	private final Reset<? super C> reset;
+	private final BlockingQueue<C> idle = new LinkedBlockingQueue<>();
+	private final Set<C> leased = Collections.newSetFromMap(new ConcurrentHashMap<C, Boolean>());
+	private final Set<C> all = Collections.newSetFromMap(new ConcurrentHashMap<C, Boolean>());
+	private final AtomicLong leaseCount = new AtomicLong();
+	private final AtomicLong leaseWaitTime = new AtomicLong();
+	private final AtomicLong maxLeaseWaitTime = new AtomicLong();
+	private final AtomicLong resetCount = new AtomicLong();
+	private final AtomicLong recycleCount = new AtomicLong();
+	private final AtomicInteger missing = new AtomicInteger();
+	private volatile boolean closed;
+
+	/**
+	 * @param size number of containers in pool
+	 * @param factory creates new, not started, containers
+	 * @param reset resets returned container, NULL means that returned containers are always recycled
+	 */
+	public ContainerPool(int size, Factory<C> factory, Reset<? super C> reset) {
+		this.size = size;
+		this.factory = factory;
+		this.reset = reset;
+	}
+
+	/**
+	 * Creates and starts all containers of pool concurrently.
+	 */
+	public void start() throws Exception {
+		final List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			futures.add(SharedExecutor.submit(new Runnable() {
+				@Override
+				public void run() {
+					addNewContainer();
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		log.info("Pool of {} containers was started", size);
+	}
+
+	/**
+	 * Leases container, waits until any container is available.
+	 */
+	public C lease(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+		if (closed) {
+			throw new IllegalStateException("Pool is closed");
+		}
+		final long start = System.currentTimeMillis();
+		final C container = idle.poll(timeout, unit);
+		if (container == null) {
+			throw new TimeoutException(String.format("No container was available in %d %s", timeout, unit));
+		}
+		final long waitTime = System.currentTimeMillis() - start;
+		leaseCount.incrementAndGet();
+		leaseWaitTime.addAndGet(waitTime);
+		maxLeaseWaitTime.accumulateAndGet(waitTime, Math::max);
+		leased.add(container);
+		return container;
+	}
+
+	/**
+	 * Returns leased container into pool. Container is reset or recycled in background.
+	 */
+	public void release(final C container) {
+		if (!leased.remove(container)) {
+			throw new IllegalArgumentException("Container was not leased from this pool");
+		}
+		SharedExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (!closed && reset(container)) {
+					idle.add(container);
+				} else {
+					recycle(container);
+				}
+			}
+		});
+	}
+
+	private boolean reset(C container) {
+		if (reset == null) {
+			return false;
+		}
+		try {
+			if (container.isRunning() && reset.reset(container)) {
+				resetCount.incrementAndGet();
+				return true;
+			}
+		} catch (Exception e) {
+			log.warn("Container {} was not reset: {}", container, e.getMessage());
+			log.trace(e.getMessage(), e);
+		}
+		return false;
+	}
+
+	private void recycle(C container) {
+		all.remove(container);
+		stopQuietly(container);
+		if (!closed) {
+			recycleCount.incrementAndGet();
+			replace();
+		}
+	}
+
+	/**
+	 * Adds new container instead of recycled one. Pool is degraded until the container is started, start is retried
+	 * after {@link #RETRY_DELAY}.
+	 */
+	private void replace() {
+		try {
+			addNewContainer();
+		} catch (IllegalStateException e) {
+			if (closed) {
+				return;
+			}
+			missing.incrementAndGet();
+			log.error("Pool is degraded, container will be started again in {} s", TimeUnit.MILLISECONDS.toSeconds(RETRY_DELAY), e);
+			SharedExecutor.schedule(new Runnable() {
+				@Override
+				public void run() {
+					missing.decrementAndGet();
+					if (!closed) {
+						replace();
+					}
+				}
+			}, RETRY_DELAY, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void addNewContainer() {
+		C container = null;
+		try {
+			container = factory.create();
+			all.add(container);
+			container.start();
+			if (closed) {
+				// Pool was closed while the container was starting
+				all.remove(container);
+				stopQuietly(container);
+				return;
+			}
+			idle.add(container);
+		} catch (Exception e) {
+			if (container != null) {
+				all.remove(container);
+				stopQuietly(container);
+			}
+			throw new IllegalStateException("Container of pool was not started", e);
+		}
+	}
+
+	private static void stopQuietly(Container<?, ?, ?> container) {
+		try {
+			container.stop();
+		} catch (Exception e) {
+			log.error("Container {} was not stopped", container, e);
+		}
+	}
+
+	/**
+	 * Stops all containers, including leased ones.
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		for (C container : all) {
+			stopQuietly(container);
+		}
+		all.clear();
+		idle.clear();
+		leased.clear();
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int getIdleCount() {
+		return idle.size();
+	}
+
+	public int getLeasedCount() {
+		return leased.size();
+	}
+
+	public long getLeaseCount() {
+		return leaseCount.get();
+	}
+
+	/**
+	 * Returns average time in milliseconds which callers waited for container.
+	 */
+	public long getAverageLeaseWaitTime() {
+		final long count = leaseCount.get();
+		return count == 0 ? 0 : leaseWaitTime.get() / count;
+	}
+
+	public long getMaxLeaseWaitTime() {
+		return maxLeaseWaitTime.get();
+	}
+
+	public long getResetCount() {
+		return resetCount.get();
+	}
+
+	public long getRecycleCount() {
+		return recycleCount.get();
+	}
+
+	/**
+	 * Returns number of recycled containers, which were not replaced because start of new container failed.
+	 */
+	public int getMissingCount() {
+		return missing.get();
+	}
+
+	public boolean isDegraded() {
+		return missing.get() > 0;
+	}
+
+	/**
+	 * Creates new container.
+	 */
+	public interface Factory<C> {
+		C create() throws Exception;
+	}
+
+	/**
+	 * Resets returned container, so it can be leased again.
+	 */
+	public interface Reset<C extends Container<?, ?, ?>> {
+
+		/**
+		 * @return true if container was reset, false if it has to be recycled
+		 */
+		boolean reset(C container) throws Exception;
+	}
+
+	/**
+	 * Returns reset, which executes commands from file by container client, e.g. CLI script of Wildfly.
+	 */
+	public static Reset<Container<?, ?, ?>> commands(final File file) {
+		return new Reset<Container<?, ?, ?>>() {
+			@Override
+			public boolean reset(Container<?, ?, ?> container) throws Exception {
+				if (!container.isClientSupported()) {
+					return false;
+				}
+				container.getClient().execute(file);
+				return true;
+			}
+		};
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.readiness;
+
+import org.jboss.qa.jcontainer.util.LogTail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * Watches log file for line which matches given pattern. Only lines appended since the last check are read,
+ * see {@link LogTail}.
+ */
+public class LogMarkerReadinessCheck implements ReadinessCheck {
+
+	private final File file;
+	private final Pattern pattern;
+	private final LogTail tail;
+	private boolean found;
+
+	/**
+	 * Creates check which ignores content already present in the file.
+	 */
+	public LogMarkerReadinessCheck(File file, Pattern pattern) {
+		this.file = file;
+		this.pattern = pattern;
+		tail = LogTail.fromEnd(file);
+	}
+
+	@Override
+	public synchronized boolean isReady() throws IOException {
+		if (!found) {
+			found = tail.find(pattern) != null;
+		}
+		return found;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("log marker '%s' in %s", pattern, file.getName());
+	}
+}
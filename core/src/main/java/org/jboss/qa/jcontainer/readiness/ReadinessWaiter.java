@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.readiness;
+
+import org.jboss.qa.jcontainer.util.executor.SharedExecutor;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import lombok.Builder;
+import lombok.Singular;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Polls readiness checks with exponential backoff until the first of them signals that container is ready.
+ */
+@Slf4j
+@Builder
+public class ReadinessWaiter {
+
+	public static final long DEFAULT_INITIAL_INTERVAL = 25L;
+	public static final long DEFAULT_MAX_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+
+	@Singular
+	private List<ReadinessCheck> checks;
+	@Builder.Default
+	private long initialInterval = DEFAULT_INITIAL_INTERVAL;
+	@Builder.Default
+	private long maxInterval = DEFAULT_MAX_INTERVAL;
+	private long timeout;
+
+	/**
+	 * Waits until any of checks is ready.
+	 *
+	 * @return check which fired first
+	 * @throws TimeoutException if no check is ready in timeout
+	 */
+	public ReadinessCheck await() throws InterruptedException, TimeoutException {
+		final long deadline = System.currentTimeMillis() + timeout;
+		long interval = initialInterval;
+		while (true) {
+			final ReadinessCheck ready = findReady();
+			if (ready != null) {
+				return ready;
+			}
+			final long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0) {
+				throw timeoutException();
+			}
+			Thread.sleep(Math.min(interval, remaining));
+			interval = Math.min(interval * 2, maxInterval);
+		}
+	}
+
+	/**
+	 * Same as {@link #await()}, but no thread is blocked between polls, they are scheduled on {@link SharedExecutor}.
+	 */
+	public CompletableFuture<ReadinessCheck> awaitAsync() {
+		final CompletableFuture<ReadinessCheck> future = new CompletableFuture<>();
+		final long deadline = System.currentTimeMillis() + timeout;
+		SharedExecutor.execute(new Runnable() {
+			private long interval = initialInterval;
+
+			@Override
+			public void run() {
+				if (future.isDone()) {
+					return;
+				}
+				final ReadinessCheck ready = findReady();
+				final long remaining = deadline - System.currentTimeMillis();
+				if (ready != null) {
+					future.complete(ready);
+				} else if (remaining <= 0) {
+					future.completeExceptionally(timeoutException());
+				} else {
+					SharedExecutor.schedule(this, Math.min(interval, remaining), TimeUnit.MILLISECONDS);
+					interval = Math.min(interval * 2, maxInterval);
+				}
+			}
+		});
+		return future;
+	}
+
+	private ReadinessCheck findReady() {
+		for (ReadinessCheck check : checks) {
+			if (isReady(check)) {
+				log.debug("Ready signal from {}", check);
+				return check;
+			}
+		}
+		return null;
+	}
+
+	private TimeoutException timeoutException() {
+		return new TimeoutException(String.format("None of %s was ready in %d ms", checks, timeout));
+	}
+
+	private static boolean isReady(ReadinessCheck check) {
+		try {
+			return check.isReady();
+		} catch (Exception e) {
+			log.trace(e.getMessage(), e);
+			return false;
+		}
+	}
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.readiness;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import lombok.AllArgsConstructor;
+
+/**
+ * Checks that port of container accepts connections.
+ */
+@AllArgsConstructor
+public class SocketReadinessCheck implements ReadinessCheck {
+
+	private static final int CONNECT_TIMEOUT = 1000;
+
+	private final String host;
+	private final int port;
+
+	@Override
+	public boolean isReady() throws Exception {
+		try (Socket socket = new Socket()) {
+			socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+			return true;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("socket %s:%d", host, port);
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Clones directory of distribution, so several instances can run from it concurrently. Files which are not modified
+ * by running instance are hard linked, only mutable directories are copied. Files are copied if hard links are not
+ * supported (e.g. source and target are on different file systems).
+ */
+@Slf4j
+public final class DirectoryCloner {
+
+	private DirectoryCloner() {
+	}
+
+	/**
+	 * @param source directory to clone
+	 * @param target new directory, must not exist or must be empty
+	 * @param copiedDirs top level directories (or files) which are copied
+	 * @param emptyDirs top level directories which are created empty
+	 */
+	public static Result clone(File source, File target, Collection<String> copiedDirs, Collection<String> emptyDirs) {
+		if (!source.isDirectory()) {
+			throw new IllegalArgumentException(String.format("Directory '%s' does not exist", source));
+		}
+		final String[] existing = target.list();
+		if (existing != null && existing.length > 0) {
+			throw new IllegalStateException(String.format("Directory '%s' is not empty", target));
+		}
+		final long start = System.currentTimeMillis();
+		final CloningVisitor visitor = new CloningVisitor(source.toPath(), target.toPath(), copiedDirs, emptyDirs);
+		try {
+			Files.walkFileTree(source.toPath(), visitor);
+		} catch (IOException e) {
+			throw new IllegalStateException(String.format("Directory '%s' was not cloned", source), e);
+		}
+		final Result result = new Result(System.currentTimeMillis() - start, visitor.copiedFiles, visitor.copiedBytes,
+				visitor.linkedFiles, visitor.linkedBytes);
+		log.info("Directory {} was cloned to {}: {}", source, target, result);
+		return result;
+	}
+
+	/**
+	 * Statistics of cloning, copied bytes are the new disk usage, linked bytes are shared with source.
+	 */
+	@Getter
+	@AllArgsConstructor
+	public static class Result {
+		private final long time;
+		private final int copiedFiles;
+		private final long copiedBytes;
+		private final int linkedFiles;
+		private final long linkedBytes;
+
+		@Override
+		public String toString() {
+			return String.format("%d ms, %d files (%d kB) copied, %d files (%d kB) linked", time, copiedFiles,
+					copiedBytes / 1024, linkedFiles, linkedBytes / 1024);
+		}
+	}
+
+	private static class CloningVisitor extends SimpleFileVisitor<Path> {
+
+		private final Path source;
+		private final Path target;
+		private final Set<String> copiedDirs;
+		private final Set<String> emptyDirs;
+		private boolean linksSupported = true;
+		private int copiedFiles;
+		private long copiedBytes;
+		private int linkedFiles;
+		private long linkedBytes;
+
+		CloningVisitor(Path source, Path target, Collection<String> copiedDirs, Collection<String> emptyDirs) {
+			this.source = source;
+			this.target = target;
+			this.copiedDirs = new HashSet<>(copiedDirs);
+			this.emptyDirs = new HashSet<>(emptyDirs);
+		}
+
+		@Override
+		public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+			final Path relative = source.relativize(dir);
+			Files.createDirectories(target.resolve(relative.toString()));
+			return relative.getNameCount() == 1 && emptyDirs.contains(relative.toString())
+					? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+		}
+
+		@Override
+		public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+			final Path relative = source.relativize(file);
+			final Path clone = target.resolve(relative.toString());
+			if (attrs.isRegularFile() && linksSupported && !copiedDirs.contains(relative.getName(0).toString())) {
+				try {
+					Files.createLink(clone, file);
+					linkedFiles++;
+					linkedBytes += attrs.size();
+					return FileVisitResult.CONTINUE;
+				} catch (IOException | UnsupportedOperationException e) {
+					log.debug("Hard links are not supported, files will be copied: {}", e.getMessage());
+					linksSupported = false;
+				}
+			}
+			Files.copy(file, clone, StandardCopyOption.COPY_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+			copiedFiles++;
+			copiedBytes += attrs.size();
+			return FileVisitResult.CONTINUE;
+		}
+	}
+}
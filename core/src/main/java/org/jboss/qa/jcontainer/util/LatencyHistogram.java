@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in milliseconds with power of two buckets. Bucket N counts latencies lower than 2^N ms,
+ * so percentiles are upper bounds with precision of factor two. Recording is lock free.
+ */
+public class LatencyHistogram {
+
+	private static final int BUCKETS = 40;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long millis) {
+		final long latency = Math.max(0, millis);
+		buckets.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(latency)));
+		count.incrementAndGet();
+		total.addAndGet(latency);
+		long current;
+		while (latency > (current = max.get()) && !max.compareAndSet(current, latency)) {
+			// retry
+		}
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public long getMean() {
+		final long n = count.get();
+		return n == 0 ? 0 : total.get() / n;
+	}
+
+	/**
+	 * Returns upper bound of given percentile (0-100) in milliseconds.
+	 */
+	public long getPercentile(double percentile) {
+		final long n = count.get();
+		if (n == 0) {
+			return 0;
+		}
+		final long rank = (long) Math.ceil(n * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += buckets.get(i);
+			if (seen >= rank) {
+				return Math.min(1L << i, max.get());
+			}
+		}
+		return max.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("count=%d, mean=%d ms, p50<=%d ms, p99<=%d ms, max=%d ms",
+				getCount(), getMean(), getPercentile(50), getPercentile(99), getMax());
+	}
+}
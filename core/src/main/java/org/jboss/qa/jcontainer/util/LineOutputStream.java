@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.function.Consumer;
+
+/**
+ * Splits written bytes into lines as they arrive, line separators are not part of lines.
+ */
+public abstract class LineOutputStream extends OutputStream {
+
+	private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+	private final Charset charset;
+
+	protected LineOutputStream(Charset charset) {
+		this.charset = charset;
+	}
+
+	/**
+	 * Returns stream passing lines to consumer.
+	 */
+	public static LineOutputStream of(Charset charset, final Consumer<String> consumer) {
+		return new LineOutputStream(charset) {
+			@Override
+			protected void onLine(String line) {
+				consumer.accept(line);
+			}
+		};
+	}
+
+	/**
+	 * Called for every complete line.
+	 */
+	protected abstract void onLine(String line);
+
+	@Override
+	public synchronized void write(int b) {
+		if (b == '\n') {
+			final int length = line.size();
+			final byte[] bytes = line.toByteArray();
+			line.reset();
+			onLine(new String(bytes, 0, length > 0 && bytes[length - 1] == '\r' ? length - 1 : length, charset));
+		} else {
+			line.write(b);
+		}
+	}
+
+	@Override
+	public synchronized void write(byte[] b, int off, int len) {
+		int start = off;
+		for (int i = off; i < off + len; i++) {
+			if (b[i] == '\n') {
+				line.write(b, start, i - start);
+				write('\n');
+				start = i + 1;
+			}
+		}
+		line.write(b, start, off + len - start);
+	}
+
+	/**
+	 * Passes the last incomplete line.
+	 */
+	@Override
+	public synchronized void close() {
+		if (line.size() > 0) {
+			write('\n');
+		}
+	}
+}
@@ -0,0 +1,430 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sparse index of log file kept in side file "name.idx". It records byte offset of every N-th line with levels
+ * present in those N lines and offset of the first line of every logged minute. Queries read only the blocks which
+ * can contain requested lines. Index is updated incrementally from the indexed length, it is rebuilt when the log
+ * file was truncated or replaced.
+ */
+@Slf4j
+public class LogIndex {
+
+	public static final int DEFAULT_BLOCK_LINES = 1000;
+	public static final String INDEX_SUFFIX = ".idx";
+
+	private static final int FORMAT_VERSION = 2;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	// Timestamp and level are searched only at the start of line
+	private static final int HEADER_LENGTH = 128;
+	private static final int CHECKSUM_LENGTH = 64;
+	private static final int MIN_LEVEL_LENGTH = 4;
+	private static final int MAX_LEVEL_LENGTH = 7;
+	private static final Map<String, Level> LEVELS = new HashMap<>();
+
+	private final File file;
+	private final File indexFile;
+	private final Charset charset;
+	private final int blockLines;
+	private boolean loaded;
+	private String identity = "";
+	private long checksum;
+	private long tailChecksum;
+	private long indexedLength;
+	private long lineCount;
+	private int blocks;
+	private long[] blockOffsets = new long[16];
+	private int[] blockLevels = new int[16];
+	private int minutes;
+	private long[] minuteOffsets = new long[16];
+	private short[] minuteValues = new short[16];
+
+	/**
+	 * Levels of log lines, levels of java.util.logging are mapped to the nearest ones.
+	 */
+	public enum Level {
+		TRACE, DEBUG, INFO, WARN, ERROR, FATAL
+	}
+
+	static {
+		for (Level level : Level.values()) {
+			LEVELS.put(level.name(), level);
+		}
+		LEVELS.put("FINEST", Level.TRACE);
+		LEVELS.put("FINER", Level.TRACE);
+		LEVELS.put("FINE", Level.DEBUG);
+		LEVELS.put("CONFIG", Level.DEBUG);
+		LEVELS.put("WARNING", Level.WARN);
+		LEVELS.put("SEVERE", Level.ERROR);
+	}
+
+	public LogIndex(File file) {
+		this(file, Charset.defaultCharset(), DEFAULT_BLOCK_LINES);
+	}
+
+	/**
+	 * @param blockLines number of lines per indexed block
+	 */
+	public LogIndex(File file, Charset charset, int blockLines) {
+		this.file = file;
+		this.indexFile = new File(file.getPath() + INDEX_SUFFIX);
+		this.charset = charset;
+		this.blockLines = blockLines;
+	}
+
+	/**
+	 * Indexes lines appended since the last update and stores the index into side file.
+	 */
+	public synchronized LogIndex update() throws IOException {
+		if (!loaded) {
+			load();
+			loaded = true;
+		}
+		if (!file.exists()) {
+			return this;
+		}
+		final String currentIdentity = identity();
+		if (indexedLength > 0 && (file.length() < indexedLength || !currentIdentity.equals(identity)
+				|| checksum(0, indexedLength) != checksum || checksum(indexedLength - CHECKSUM_LENGTH, indexedLength) != tailChecksum)) {
+			log.debug("Log file {} was replaced, index is rebuilt", file.getName());
+			reset();
+		}
+		final long previousLength = indexedLength;
+		index();
+		if (indexedLength != previousLength || !currentIdentity.equals(identity)) {
+			identity = currentIdentity;
+			checksum = checksum(0, indexedLength);
+			tailChecksum = checksum(indexedLength - CHECKSUM_LENGTH, indexedLength);
+			store();
+		}
+		return this;
+	}
+
+	/**
+	 * Returns lines of given level logged between given minutes (both inclusive), all levels if level is NULL.
+	 */
+	public synchronized List<String> find(Level level, LocalTime from, LocalTime to) throws IOException {
+		final int fromMinute = from.getHour() * 60 + from.getMinute();
+		final int toMinute = to.getHour() * 60 + to.getMinute();
+		final List<String> result = new ArrayList<>();
+		int i = 0;
+		while (i < minutes) {
+			if (minuteValues[i] < fromMinute || minuteValues[i] > toMinute) {
+				i++;
+				continue;
+			}
+			final long start = minuteOffsets[i];
+			while (i < minutes && minuteValues[i] >= fromMinute && minuteValues[i] <= toMinute) {
+				i++;
+			}
+			final long end = i < minutes ? minuteOffsets[i] : indexedLength;
+			findInRange(level, start, end, result);
+		}
+		return result;
+	}
+
+	private void findInRange(Level level, long start, long end, List<String> result) throws IOException {
+		for (int b = blockOf(start); b < blocks && blockOffsets[b] < end; b++) {
+			if (level != null && (blockLevels[b] & (1 << level.ordinal())) == 0) {
+				continue;
+			}
+			final long blockEnd = Math.min(end, b + 1 < blocks ? blockOffsets[b + 1] : indexedLength);
+			for (String line : readLines(Math.max(start, blockOffsets[b]), blockEnd)) {
+				if (level == null || level == parseLevel(line)) {
+					result.add(line);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns at most count lines which precede line starting at given offset.
+	 */
+	public synchronized List<String> linesBefore(long offset, int count) throws IOException {
+		final long limit = Math.min(offset, indexedLength);
+		final List<String> result = new ArrayList<>();
+		for (int b = blockOf(limit); b >= 0 && result.size() < count; b--) {
+			final long blockEnd = b + 1 < blocks ? Math.min(limit, blockOffsets[b + 1]) : limit;
+			final List<String> lines = readLines(blockOffsets[b], blockEnd);
+			result.addAll(0, lines.subList(Math.max(0, lines.size() - (count - result.size())), lines.size()));
+		}
+		return result;
+	}
+
+	public synchronized long getLineCount() {
+		return lineCount;
+	}
+
+	/**
+	 * Returns length of indexed content, it ends with the last complete line.
+	 */
+	public synchronized long getIndexedLength() {
+		return indexedLength;
+	}
+
+	public File getIndexFile() {
+		return indexFile;
+	}
+
+	private int blockOf(long offset) {
+		final int found = Arrays.binarySearch(blockOffsets, 0, blocks, offset);
+		return found >= 0 ? found : -found - 2;
+	}
+
+	private void index() throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			final byte[] header = new byte[HEADER_LENGTH];
+			int headerLength = 0;
+			long position = indexedLength;
+			long lineStart = indexedLength;
+			int read;
+			while ((read = channel.read(buffer, position)) > 0) {
+				final byte[] bytes = buffer.array();
+				for (int i = 0; i < read; i++) {
+					if (bytes[i] == '\n') {
+						indexLine(lineStart, header, headerLength);
+						headerLength = 0;
+						lineStart = position + i + 1;
+					} else if (headerLength < HEADER_LENGTH) {
+						header[headerLength++] = bytes[i];
+					}
+				}
+				position += read;
+				buffer.clear();
+			}
+			indexedLength = lineStart;
+		}
+	}
+
+	private void indexLine(long offset, byte[] header, int length) {
+		if (lineCount % blockLines == 0) {
+			if (blocks == blockOffsets.length) {
+				blockOffsets = Arrays.copyOf(blockOffsets, blocks * 2);
+				blockLevels = Arrays.copyOf(blockLevels, blocks * 2);
+			}
+			blockOffsets[blocks] = offset;
+			blockLevels[blocks++] = 0;
+		}
+		lineCount++;
+		final Level level = parseLevel(header, length);
+		if (level != null) {
+			blockLevels[blocks - 1] |= 1 << level.ordinal();
+		}
+		final int minute = parseMinute(header, length);
+		if (minute >= 0 && (minutes == 0 || minuteValues[minutes - 1] != minute)) {
+			if (minutes == minuteOffsets.length) {
+				minuteOffsets = Arrays.copyOf(minuteOffsets, minutes * 2);
+				minuteValues = Arrays.copyOf(minuteValues, minutes * 2);
+			}
+			minuteOffsets[minutes] = offset;
+			minuteValues[minutes++] = (short) minute;
+		}
+	}
+
+	/**
+	 * Returns minute of day of the first "HH:mm:ss" in header, -1 if there is none. Bytes are scanned directly,
+	 * regular expressions would be the bottleneck of indexing.
+	 */
+	private static int parseMinute(byte[] header, int length) {
+		for (int i = 0; i + 5 < length; i++) {
+			if (header[i + 2] == ':' && header[i + 5] == ':' && isDigit(header[i]) && isDigit(header[i + 1])
+					&& isDigit(header[i + 3]) && isDigit(header[i + 4]) && (i == 0 || !isDigit(header[i - 1]))) {
+				return ((header[i] - '0') * 10 + header[i + 1] - '0') * 60 + (header[i + 3] - '0') * 10 + header[i + 4] - '0';
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns level of the first word in header which is name of level, NULL if there is none.
+	 */
+	private static Level parseLevel(byte[] header, int length) {
+		int i = 0;
+		while (i < length) {
+			if (!isUpperCase(header[i])) {
+				i++;
+				continue;
+			}
+			final int start = i;
+			while (i < length && isUpperCase(header[i])) {
+				i++;
+			}
+			final boolean word = (start == 0 || !isWordByte(header[start - 1])) && (i == length || !isWordByte(header[i]));
+			if (word && i - start >= MIN_LEVEL_LENGTH && i - start <= MAX_LEVEL_LENGTH) {
+				final Level level = LEVELS.get(new String(header, start, i - start, StandardCharsets.ISO_8859_1));
+				if (level != null) {
+					return level;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static Level parseLevel(String line) {
+		final byte[] header = line.substring(0, Math.min(HEADER_LENGTH, line.length())).getBytes(StandardCharsets.ISO_8859_1);
+		return parseLevel(header, header.length);
+	}
+
+	private static boolean isDigit(byte b) {
+		return b >= '0' && b <= '9';
+	}
+
+	private static boolean isUpperCase(byte b) {
+		return b >= 'A' && b <= 'Z';
+	}
+
+	private static boolean isWordByte(byte b) {
+		return isUpperCase(b) || (b >= 'a' && b <= 'z') || isDigit(b) || b == '_';
+	}
+
+	private List<String> readLines(long start, long end) throws IOException {
+		if (end <= start) {
+			return Collections.emptyList();
+		}
+		final ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			int read;
+			do {
+				read = channel.read(buffer, start + buffer.position());
+			} while (read > 0 && buffer.hasRemaining());
+		}
+		final List<String> lines = new ArrayList<>();
+		try (LineOutputStream out = LineOutputStream.of(charset, lines::add)) {
+			out.write(buffer.array(), 0, buffer.position());
+		}
+		return lines;
+	}
+
+	/**
+	 * Returns checksum of at most {@link #CHECKSUM_LENGTH} bytes from given offset. Checksums of the beginning of file and of
+	 * bytes before the indexed length tell whether indexed file was replaced or rewritten in place.
+	 */
+	private long checksum(long from, long to) throws IOException {
+		final long start = Math.max(0, from);
+		final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(CHECKSUM_LENGTH, to - start));
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			int read;
+			do {
+				read = channel.read(buffer, start + buffer.position());
+			} while (read > 0 && buffer.hasRemaining());
+		}
+		final CRC32 crc = new CRC32();
+		crc.update(buffer.array(), 0, buffer.position());
+		return crc.getValue();
+	}
+
+	/**
+	 * Returns identity of file, i.e. file key (device and inode) or creation time where file key is not available.
+	 */
+	private String identity() throws IOException {
+		final BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+		return attributes.fileKey() != null ? attributes.fileKey().toString() : String.valueOf(attributes.creationTime().toMillis());
+	}
+
+	private void reset() {
+		identity = "";
+		indexedLength = 0;
+		lineCount = 0;
+		blocks = 0;
+		minutes = 0;
+	}
+
+	private void load() {
+		if (!indexFile.exists()) {
+			return;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+			if (in.readInt() != FORMAT_VERSION || in.readInt() != blockLines) {
+				return;
+			}
+			identity = in.readUTF();
+			checksum = in.readLong();
+			tailChecksum = in.readLong();
+			indexedLength = in.readLong();
+			lineCount = in.readLong();
+			blocks = in.readInt();
+			blockOffsets = new long[Math.max(16, blocks)];
+			blockLevels = new int[blockOffsets.length];
+			for (int i = 0; i < blocks; i++) {
+				blockOffsets[i] = in.readLong();
+				blockLevels[i] = in.readInt();
+			}
+			minutes = in.readInt();
+			minuteOffsets = new long[Math.max(16, minutes)];
+			minuteValues = new short[minuteOffsets.length];
+			for (int i = 0; i < minutes; i++) {
+				minuteOffsets[i] = in.readLong();
+				minuteValues[i] = in.readShort();
+			}
+		} catch (IOException e) {
+			log.debug("Index {} was not loaded, it is rebuilt", indexFile.getName(), e);
+			reset();
+		}
+	}
+
+	private void store() throws IOException {
+		final File tmp = new File(indexFile.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(blockLines);
+			out.writeUTF(identity);
+			out.writeLong(checksum);
+			out.writeLong(tailChecksum);
+			out.writeLong(indexedLength);
+			out.writeLong(lineCount);
+			out.writeInt(blocks);
+			for (int i = 0; i < blocks; i++) {
+				out.writeLong(blockOffsets[i]);
+				out.writeInt(blockLevels[i]);
+			}
+			out.writeInt(minutes);
+			for (int i = 0; i < minutes; i++) {
+				out.writeLong(minuteOffsets[i]);
+				out.writeShort(minuteValues[i]);
+			}
+		}
+		Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.util;
+
+import org.jboss.qa.jcontainer.readiness.ReadinessCheck;
+import org.jboss.qa.jcontainer.readiness.ReadinessWaiter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reads lines appended to log file since the last read, every tail remembers its own offset. Bytes are read by
+ * positional channel reads, so the cost of read does not depend on size of the file.
+ *
+ * <p>Rotation is detected by change of file identity (inode) or by shrinking of the file. The rest of the renamed file
+ * (e.g. "server.log.2026-10-17" or "karaf.log.1") is read before the new file, the same is done when the supplier
+ * returns another file (e.g. "catalina.2026-10-18.log").
+ */
+@Slf4j
+public class LogTail {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final Supplier<File> files;
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private final Deque<String> pending = new ArrayDeque<>();
+	private final LineOutputStream lines;
+	private File file;
+	private Object fileKey;
+	private long position;
+
+	/**
+	 * @param files supplies current log file, it is called by every read
+	 * @param fromStart whether existing content is read, otherwise only appended lines are read
+	 */
+	public LogTail(Supplier<File> files, Charset charset, boolean fromStart) {
+		this.files = files;
+		lines = LineOutputStream.of(charset, pending::add);
+		file = files.get();
+		fileKey = fileKey(file);
+		position = fromStart ? 0 : file.length();
+	}
+
+	/**
+	 * Returns tail which reads only lines appended after it was created.
+	 */
+	public static LogTail fromEnd(File file) {
+		return new LogTail(() -> file, Charset.defaultCharset(), false);
+	}
+
+	/**
+	 * Returns tail which reads also existing content of file.
+	 */
+	public static LogTail fromStart(File file) {
+		return new LogTail(() -> file, Charset.defaultCharset(), true);
+	}
+
+	/**
+	 * Returns complete lines appended since the last read.
+	 */
+	public synchronized List<String> readLines() throws IOException {
+		readAppended(null);
+		final List<String> result = new ArrayList<>(pending);
+		pending.clear();
+		return result;
+	}
+
+	/**
+	 * Returns the first appended line which contains match of pattern, NULL if there is none. Lines are matched as they
+	 * are read and reading stops at the first match. Lines up to the matching one are consumed, the following lines are
+	 * left for the next read.
+	 */
+	public synchronized String find(Pattern pattern) throws IOException {
+		final String line = poll(pattern);
+		return line != null ? line : readAppended(pattern);
+	}
+
+	private String poll(Pattern pattern) {
+		String line;
+		while ((line = pending.poll()) != null) {
+			if (pattern.matcher(line).find()) {
+				return line;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Waits until line which contains match of pattern is appended, see {@link #find(Pattern)}.
+	 *
+	 * @throws TimeoutException if no such line is appended in timeout
+	 */
+	public String await(final Pattern pattern, long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+		final AtomicReference<String> found = new AtomicReference<>();
+		final ReadinessCheck check = new ReadinessCheck() {
+			@Override
+			public boolean isReady() throws IOException {
+				found.set(find(pattern));
+				return found.get() != null;
+			}
+
+			@Override
+			public String toString() {
+				return String.format("log pattern '%s' in %s", pattern, file.getName());
+			}
+		};
+		ReadinessWaiter.builder().check(check).timeout(unit.toMillis(timeout)).build().await();
+		return found.get();
+	}
+
+	/**
+	 * Skips all content of file, only lines appended after this call are read.
+	 */
+	public synchronized void mark() {
+		lines.close();
+		pending.clear();
+		file = files.get();
+		fileKey = fileKey(file);
+		position = file.length();
+	}
+
+	/**
+	 * Reads appended lines into pending ones. If pattern is given, reading stops at the first matching line, which is
+	 * returned, and file is not rotated until the rest of the previous file is read.
+	 */
+	private String readAppended(Pattern pattern) throws IOException {
+		final File current = files.get();
+		final Object currentKey = fileKey(current);
+		String match = null;
+		if (!current.equals(file)) {
+			match = read(file, pattern);
+			if (match != null) {
+				return match;
+			}
+			rotate(current, currentKey);
+		} else if (!Objects.equals(currentKey, fileKey)) {
+			final File rotated = fileKey != null ? findRotated() : null;
+			if (rotated != null) {
+				match = read(rotated, pattern);
+				if (match != null) {
+					return match;
+				}
+			}
+			rotate(current, currentKey);
+		} else if (current.length() < position) {
+			log.debug("Log file {} was truncated", current.getName());
+			rotate(current, currentKey);
+		}
+		if (pattern != null) {
+			// The last line of previous file
+			match = poll(pattern);
+		}
+		return match != null ? match : read(current, pattern);
+	}
+
+	private void rotate(File current, Object currentKey) {
+		// Incomplete line of previous file is complete
+		lines.close();
+		file = current;
+		fileKey = currentKey;
+		position = 0;
+	}
+
+	private String read(File source, Pattern pattern) throws IOException {
+		if (!source.exists()) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+			int read;
+			while ((read = channel.read(buffer, position)) > 0) {
+				position += read;
+				lines.write(buffer.array(), 0, read);
+				buffer.clear();
+				if (pattern != null) {
+					final String match = poll(pattern);
+					if (match != null) {
+						return match;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Finds renamed file among files of the same base name, e.g. "server.log.2026-10-17" for "server.log".
+	 */
+	private File findRotated() {
+		final String name = file.getName();
+		final String prefix = (name.indexOf('.') > 0 ? name.substring(0, name.indexOf('.')) : name) + ".";
+		final File[] siblings = file.getAbsoluteFile().getParentFile().listFiles();
+		if (siblings != null) {
+			for (File sibling : siblings) {
+				if (sibling.getName().startsWith(prefix) && fileKey.equals(fileKey(sibling))) {
+					log.debug("Log file {} was rotated to {}", name, sibling.getName());
+					return sibling;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static Object fileKey(File file) {
+		try {
+			return Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.util;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Allocates non-overlapping port blocks for containers running concurrently on the same machine. Block (slot) N shifts
+ * all default ports of container by N * {@value #BLOCK_SIZE}. Slots are shared by threads and JVMs via registry file
+ * guarded by file lock, so parallel Maven forks never get the same slot. Slots of dead JVMs are reclaimed.
+ */
+@Slf4j
+public final class PortAllocator {
+
+	public static final int BLOCK_SIZE = 100;
+	public static final int MAX_SLOT = 500;
+	private static final int MAX_PORT = 65535;
+	public static final File REGISTRY = new File(System.getProperty("java.io.tmpdir"), "jcontainer-ports.registry");
+
+	private static final String PID = ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+
+	private PortAllocator() {
+	}
+
+	/**
+	 * Allocates the first free slot, where all given default ports shifted by its offset can be bound.
+	 */
+	public static Lease allocate(int... defaultPorts) {
+		synchronized (PortAllocator.class) { // File lock is held by whole JVM, threads are serialized here
+			try (RandomAccessFile file = new RandomAccessFile(REGISTRY, "rw"); FileLock lock = file.getChannel().lock()) {
+				final Map<Integer, String> slots = read(file.getChannel());
+				for (int slot = 1; slot <= MAX_SLOT; slot++) {
+					if (!slots.containsKey(slot) && areFree(slot * BLOCK_SIZE, defaultPorts)) {
+						slots.put(slot, PID);
+						write(file.getChannel(), slots);
+						log.debug("Port slot {} (offset {}) was allocated", slot, slot * BLOCK_SIZE);
+						return new Lease(slot);
+					}
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException("Port registry is not accessible", e);
+			}
+		}
+		throw new IllegalStateException("There is no free port slot");
+	}
+
+	private static boolean acquire(int slot) {
+		synchronized (PortAllocator.class) {
+			try (RandomAccessFile file = new RandomAccessFile(REGISTRY, "rw"); FileLock lock = file.getChannel().lock()) {
+				final Map<Integer, String> slots = read(file.getChannel());
+				final String owner = slots.get(slot);
+				if (owner != null && !owner.equals(PID)) {
+					return false;
+				}
+				slots.put(slot, PID);
+				write(file.getChannel(), slots);
+				return true;
+			} catch (IOException e) {
+				throw new IllegalStateException("Port registry is not accessible", e);
+			}
+		}
+	}
+
+	private static void release(int slot) {
+		synchronized (PortAllocator.class) {
+			try (RandomAccessFile file = new RandomAccessFile(REGISTRY, "rw"); FileLock lock = file.getChannel().lock()) {
+				final Map<Integer, String> slots = read(file.getChannel());
+				if (PID.equals(slots.get(slot))) {
+					slots.remove(slot);
+					write(file.getChannel(), slots);
+					log.debug("Port slot {} was released", slot);
+				}
+			} catch (IOException e) {
+				log.error("Port slot {} was not released", slot, e);
+			}
+		}
+	}
+
+	private static Map<Integer, String> read(FileChannel channel) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+		channel.read(buffer, 0);
+		final Map<Integer, String> slots = new TreeMap<>();
+		for (String line : StringUtils.split(new String(buffer.array(), StandardCharsets.UTF_8), '\n')) {
+			final String[] entry = StringUtils.split(line);
+			if (entry.length == 2 && StringUtils.isNumeric(entry[0]) && isAlive(entry[1])) {
+				slots.put(Integer.valueOf(entry[0]), entry[1]);
+			}
+		}
+		return slots;
+	}
+
+	private static void write(FileChannel channel, Map<Integer, String> slots) throws IOException {
+		final StringBuilder sb = new StringBuilder();
+		for (Map.Entry<Integer, String> entry : slots.entrySet()) {
+			sb.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+		}
+		channel.truncate(0);
+		channel.write(ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8)), 0);
+		channel.force(false);
+	}
+
+	private static boolean isAlive(String pid) {
+		if (PID.equals(pid)) {
+			return true;
+		}
+		return ProcessDiscovery.isSupported() ? ProcessDiscovery.isAlive(pid) : ProcessUtils.isRunning(pid);
+	}
+
+	private static boolean areFree(int offset, int... defaultPorts) {
+		for (int port : defaultPorts) {
+			if (port + offset > MAX_PORT) {
+				return false;
+			}
+			try (ServerSocket socket = new ServerSocket()) {
+				socket.setReuseAddress(false);
+				socket.bind(new InetSocketAddress(port + offset));
+			} catch (IOException e) {
+				log.debug("Port {} is not free", port + offset);
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Allocated port slot. It is held until it is released.
+	 */
+	public static final class Lease {
+
+		private final int slot;
+		private volatile boolean held = true;
+
+		private Lease(int slot) {
+			this.slot = slot;
+		}
+
+		public int getSlot() {
+			return slot;
+		}
+
+		public int getOffset() {
+			return slot * BLOCK_SIZE;
+		}
+
+		/**
+		 * Holds released slot again.
+		 *
+		 * @throws IllegalStateException if slot was allocated by another JVM in the meantime
+		 */
+		public synchronized void acquire() {
+			if (!held) {
+				if (!PortAllocator.acquire(slot)) {
+					throw new IllegalStateException(String.format("Port slot %d is used by another process", slot));
+				}
+				held = true;
+			}
+		}
+
+		public synchronized void release() {
+			if (held) {
+				PortAllocator.release(slot);
+				held = false;
+			}
+		}
+
+		public boolean isHeld() {
+			return held;
+		}
+	}
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.util;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import org.jboss.qa.jcontainer.AbstractContainer;
+import org.jboss.qa.jcontainer.util.executor.SharedExecutor;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-process discovery of container processes. Process table is read from /proc (Linux), so no external command is forked.
+ * Platforms without /proc fall back to {@link ProcessUtils} commands.
+ */
+@Slf4j
+public final class ProcessDiscovery {
+
+	private static final File PROC = new File("/proc");
+	private static final boolean PROC_SUPPORTED = new File(PROC, "self" + File.separator + "cmdline").exists();
+	private static final long PROC_POLL_INTERVAL = 100L;
+	private static final long COMMAND_POLL_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+
+	private static final Map<Long, String> CONTAINER_PIDS = new ConcurrentHashMap<>();
+	private static final Method PROCESS_HANDLE_OF = findProcessHandleMethod("of", long.class);
+	private static final Method PROCESS_HANDLE_ON_EXIT = findProcessHandleMethod("onExit");
+
+	private ProcessDiscovery() {
+	}
+
+	/**
+	 * Checks if process table can be read in-process.
+	 */
+	public static boolean isSupported() {
+		return PROC_SUPPORTED;
+	}
+
+	/**
+	 * Returns PID of process started with -Djcontainer.id=id, NULL if there is no such process.
+	 */
+	public static String getJavaPidByContainerId(long id) {
+		if (!PROC_SUPPORTED) {
+			return ProcessUtils.findJavaPidByContainerId(id);
+		}
+		final String cached = CONTAINER_PIDS.get(id);
+		if (cached != null && isContainerProcess(cached, id)) {
+			return cached;
+		}
+		final String pid = scanForContainer(id);
+		if (pid != null) {
+			CONTAINER_PIDS.put(id, pid);
+		} else {
+			CONTAINER_PIDS.remove(id);
+		}
+		return pid;
+	}
+
+	/**
+	 * Returns PID of parent process, NULL if process does not exist.
+	 */
+	public static String getParentPid(String pid) {
+		if (!PROC_SUPPORTED) {
+			return ProcessUtils.findParentPidOfPid(pid);
+		}
+		final String stat = readStat(pid);
+		if (stat == null) {
+			return null;
+		}
+		// Format: "pid (comm) state ppid ...", comm may contain spaces or parentheses
+		final String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+		return fields[1];
+	}
+
+	/**
+	 * Returns command line arguments of process, empty list if process does not exist or is not accessible.
+	 */
+	public static List<String> getCommandLine(String pid) {
+		try {
+			final byte[] cmdline = Files.readAllBytes(new File(PROC, pid + File.separator + "cmdline").toPath());
+			return Arrays.asList(StringUtils.split(new String(cmdline, StandardCharsets.UTF_8), '\0'));
+		} catch (IOException e) {
+			log.trace(e.getMessage(), e);
+			return Arrays.asList();
+		}
+	}
+
+	/**
+	 * Checks if process exists and it is not a zombie.
+	 *
+	 * @throws UnsupportedOperationException if /proc is not available
+	 */
+	public static boolean isAlive(String pid) {
+		if (!PROC_SUPPORTED) {
+			throw new UnsupportedOperationException("Process table is not accessible on this platform");
+		}
+		final String stat = readStat(pid);
+		return stat != null && stat.charAt(stat.lastIndexOf(')') + 2) != 'Z';
+	}
+
+	/**
+	 * Returns future, which is completed when process exits.
+	 */
+	public static CompletableFuture<Void> onExit(final String pid) {
+		if (PROCESS_HANDLE_OF != null) {
+			try {
+				final Object handle = ((Optional<?>) PROCESS_HANDLE_OF.invoke(null, Long.parseLong(pid))).orElse(null);
+				if (handle == null) {
+					return CompletableFuture.completedFuture(null);
+				}
+				return ((CompletableFuture<?>) PROCESS_HANDLE_ON_EXIT.invoke(handle)).thenApply(p -> null);
+			} catch (Exception e) {
+				log.trace(e.getMessage(), e);
+			}
+		}
+		if (PROC_SUPPORTED) {
+			return poll(() -> !isAlive(pid), PROC_POLL_INTERVAL);
+		}
+		return poll(() -> !ProcessUtils.isRunning(pid), COMMAND_POLL_INTERVAL);
+	}
+
+	/**
+	 * Returns future, which is completed when no process of container exists.
+	 */
+	public static CompletableFuture<Void> onContainerExit(final long id) {
+		if (!PROC_SUPPORTED && PROCESS_HANDLE_OF == null) {
+			return poll(() -> ProcessUtils.findJavaPidByContainerId(id) == null, COMMAND_POLL_INTERVAL);
+		}
+		final String pid = getJavaPidByContainerId(id);
+		if (pid == null) {
+			return CompletableFuture.completedFuture(null);
+		}
+		log.debug("Waiting for exit of container {} (PID {}) ...", id, pid);
+		return onExit(pid).thenCompose(v -> onContainerExit(id));
+	}
+
+	/**
+	 * Removes cached PID of container.
+	 */
+	public static void evict(long id) {
+		CONTAINER_PIDS.remove(id);
+	}
+
+	private static String scanForContainer(long id) {
+		final File[] entries = PROC.listFiles();
+		if (entries == null) {
+			return null;
+		}
+		String result = null;
+		for (File entry : entries) {
+			final String pid = entry.getName();
+			if (StringUtils.isNumeric(pid) && isContainerProcess(pid, id)
+					&& (result == null || Long.parseLong(pid) > Long.parseLong(result))) {
+				result = pid;
+			}
+		}
+		return result;
+	}
+
+	private static boolean isContainerProcess(String pid, long id) {
+		final String marker = String.format("-D%s=%d", AbstractContainer.JCONTAINER_ID, id);
+		boolean found = false;
+		for (String arg : getCommandLine(pid)) {
+			if (arg.contains("/bin/bash")) { // Ignore shell wrappers, only process which got the property itself is wanted
+				return false;
+			}
+			found |= arg.equals(marker);
+		}
+		return found;
+	}
+
+	private static String readStat(String pid) {
+		try {
+			return FileUtils.readFileToString(new File(PROC, pid + File.separator + "stat"));
+		} catch (IOException e) {
+			log.trace(e.getMessage(), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Returns future which is completed exceptionally with {@link TimeoutException} if the given one does not complete in timeout.
+	 */
+	public static <T> CompletableFuture<T> withTimeout(CompletableFuture<T> future, long timeout, TimeUnit unit) {
+		final ScheduledFuture<?> timer = SharedExecutor.schedule(() -> future.completeExceptionally(
+				new TimeoutException(String.format("Not completed in %d %s", timeout, unit))), timeout, unit);
+		future.whenComplete((r, e) -> timer.cancel(false));
+		return future;
+	}
+
+	static CompletableFuture<Void> poll(final Condition condition, final long interval) {
+		final CompletableFuture<Void> future = new CompletableFuture<>();
+		SharedExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (future.isDone()) {
+					return;
+				}
+				if (condition.isMet()) {
+					future.complete(null);
+				} else {
+					SharedExecutor.schedule(this, interval, TimeUnit.MILLISECONDS);
+				}
+			}
+		});
+		return future;
+	}
+
+	private static Method findProcessHandleMethod(String name, Class<?>... parameterTypes) {
+		try {
+			// ProcessHandle is available since JDK 9, project is compiled for JDK 8
+			return Class.forName("java.lang.ProcessHandle").getMethod(name, parameterTypes);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	interface Condition {
+		boolean isMet();
+	}
+}
@@ -20,14 +20,21 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.SystemUtils;
 
 import org.jboss.qa.jcontainer.AbstractContainer;
+import org.jboss.qa.jcontainer.Configuration;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -35,43 +42,94 @@ import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public final class ProcessUtils {
+	private static final long PORT_POLL_INTERVAL = 100L;
+	private static final int PORT_CONNECT_TIMEOUT = 1000;
+
 	private ProcessUtils() {
 	}
 
+	public static final long KILL_TIMEOUT = TimeUnit.SECONDS.toMillis(15);
+
 	public static void killJavaByName(String processName) {
-		final List<String> pids = getJavaPidsByName(processName);
-		if (pids != null) {
-			for (String pid : pids) {
-				kill(pid);
-			}
+		await(killJavaByNameAsync(processName));
+	}
+
+	/**
+	 * Kills all java processes with given name concurrently.
+	 *
+	 * @return future which is completed when all processes exited
+	 */
+	public static CompletableFuture<Void> killJavaByNameAsync(String processName) {
+		final List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (String pid : getJavaPidsByName(processName)) {
+			futures.add(killAsync(pid));
 		}
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]));
 	}
 
 	public static void killAllJavaContainerProcesses(long id, String pid, String parentPid) {
+		killAllJavaContainerProcesses(id, pid, parentPid, null);
+	}
+
+	/**
+	 * Kills java process of container and its parent script.
+	 *
+	 * @param configuration if it is not NULL, method returns when busy port of container is free as well
+	 */
+	public static void killAllJavaContainerProcesses(long id, String pid, String parentPid, Configuration configuration) {
 		log.debug("Container {} has pid {} and parentPid {}", id, pid, parentPid);
-		kill(pid);
+		kill(pid, configuration);
 		// remove parent standalone.sh process of java container process which was not destroyed via process.destroy() call
-		final String ensureParentPidEapProcessCommand = String.format("ps aux | awk '$2 == \"%s\"' | grep \"standalone.sh\" | awk '{print $2}'", parentPid);
-		final String parentPidViaEapGrep = executeCommandUnix(ensureParentPidEapProcessCommand);
-		log.debug("Parent process standalone.sh has pid '{}' and found pid via another grep '{}'", parentPid, parentPidViaEapGrep);
-		if (parentPid != null && parentPid.equals(parentPidViaEapGrep)) {
+		if (parentPid != null && isStandaloneScript(parentPid)) {
 			kill(parentPid);
 		} else {
 			log.error("Parent process standalone.sh which run java process container with id {} was not found", id);
 		}
 	}
 
+	private static boolean isStandaloneScript(String pid) {
+		if (ProcessDiscovery.isSupported()) {
+			for (String arg : ProcessDiscovery.getCommandLine(pid)) {
+				if (arg.contains("standalone.sh")) {
+					return true;
+				}
+			}
+			return false;
+		}
+		final String ensureParentPidEapProcessCommand = String.format("ps aux | awk '$2 == \"%s\"' | grep \"standalone.sh\" | awk '{print $2}'", pid);
+		final String parentPidViaEapGrep = executeCommandUnix(ensureParentPidEapProcessCommand);
+		log.debug("Parent process standalone.sh has pid '{}' and found pid via another grep '{}'", pid, parentPidViaEapGrep);
+		return pid.equals(parentPidViaEapGrep);
+	}
+
 	public static void killJavaByContainerId(long id) {
+		killJavaByContainerId(id, null);
+	}
+
+	/**
+	 * Kills java process of container.
+	 *
+	 * @param configuration if it is not NULL, method returns when busy port of container is free as well
+	 */
+	public static void killJavaByContainerId(long id, Configuration configuration) {
 		final String pid = getJavaPidByContainerId(id);
 		log.debug("Container {} has pid {}", id, pid);
 		if (pid != null) {
-			kill(pid);
+			kill(pid, configuration);
 		} else {
 			log.error("Process representing container with id {} was not found", id);
 		}
 	}
 
 	public static String getJavaPidByContainerId(long id) {
+		return ProcessDiscovery.getJavaPidByContainerId(id);
+	}
+
+	public static String getParentPidOfPid(String pid) {
+		return ProcessDiscovery.getParentPid(pid);
+	}
+
+	static String findJavaPidByContainerId(long id) {
 		if (SystemUtils.IS_OS_WINDOWS) {
 			return getJavaPidByContainerIdWindows(id);
 		} else if (SystemUtils.IS_OS_HP_UX) {
@@ -81,7 +139,7 @@ public final class ProcessUtils {
 		}
 	}
 
-	public static String getParentPidOfPid(String pid) {
+	static String findParentPidOfPid(String pid) {
 		final String command = String.format("ps -ef | awk '$2 == \"%s\"' | awk '{print $3}'", pid);
 		return executeCommandUnix(command);
 	}
@@ -159,33 +217,103 @@ public final class ProcessUtils {
 	}
 
 	public static void kill(String pid) {
-		if (pid != null && !pid.isEmpty()) {
-			final String cmd;
-			if (SystemUtils.IS_OS_WINDOWS) {
-				cmd = "taskkill /F /T /PID " + pid;
-			} else { // UNIX-like
-				cmd = "kill -9 " + pid;
-			}
-			try {
-				final Process p = Runtime.getRuntime().exec(cmd);
-				if (p.waitFor() == 0) {
-					log.info("Process {} was killed", pid);
-				} else {
-					log.error("Process {} was not killed", pid);
-					log.debug("Error stream: {}", IOUtils.toString(p.getErrorStream()));
-				}
-			} catch (Exception e) {
-				log.error(e.getMessage(), e);
-			}
+		await(killAsync(pid));
+	}
+
+	private static void kill(String pid, Configuration configuration) {
+		await(killAsync(pid, configuration, KILL_TIMEOUT, TimeUnit.MILLISECONDS));
+	}
 
-			try {
-				//Give some time to kill. Sometimes I got an error message like "port 8080 is alreagy opened" on Windows machine when didn't wait here.
-				Thread.sleep(15 * 1000L);
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
+	/**
+	 * Kills process.
+	 *
+	 * @return future which is completed when process exited, or exceptionally after {@link #KILL_TIMEOUT}
+	 */
+	public static CompletableFuture<Void> killAsync(String pid) {
+		return killAsync(pid, null, KILL_TIMEOUT, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Kills process of container.
+	 *
+	 * @param configuration if it is not NULL, future is completed when busy port of container is free as well
+	 * @return future which is completed when process exited, or exceptionally with {@link TimeoutException} after timeout
+	 */
+	public static CompletableFuture<Void> killAsync(String pid, final Configuration configuration, long timeout, TimeUnit unit) {
+		if (pid == null || pid.isEmpty()) {
+			log.debug("Unable kill process because PID is Null or Empty!");
+			return CompletableFuture.completedFuture(null);
+		}
+		final String cmd;
+		if (SystemUtils.IS_OS_WINDOWS) {
+			cmd = "taskkill /F /T /PID " + pid;
+		} else { // UNIX-like
+			cmd = "kill -9 " + pid;
+		}
+		try {
+			final Process p = Runtime.getRuntime().exec(cmd);
+			if (p.waitFor() == 0) {
+				log.info("Process {} was killed", pid);
+			} else {
+				log.error("Process {} was not killed", pid);
+				log.debug("Error stream: {}", IOUtils.toString(p.getErrorStream()));
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			final CompletableFuture<Void> failed = new CompletableFuture<>();
+			failed.completeExceptionally(e);
+			return failed;
+		} catch (Exception e) {
+			log.error(e.getMessage(), e);
+		}
+		CompletableFuture<Void> future = ProcessDiscovery.onExit(pid);
+		if (configuration != null) {
+			// Sometimes I got an error message like "port 8080 is already opened" on Windows machine when didn't wait here.
+			future = future.thenCompose(v -> onPortFree(configuration.getHost(), configuration.getBusyPort()));
+		}
+		return ProcessDiscovery.withTimeout(future, timeout, unit);
+	}
+
+	private static CompletableFuture<Void> onPortFree(final String host, final int port) {
+		return ProcessDiscovery.poll(() -> isPortFree(host, port), PORT_POLL_INTERVAL);
+	}
+
+	private static boolean isPortFree(String host, int port) {
+		try (Socket socket = new Socket()) {
+			socket.connect(new InetSocketAddress(host, port), PORT_CONNECT_TIMEOUT);
+			return false;
+		} catch (IOException e) {
+			return true;
+		}
+	}
+
+	private static void await(CompletableFuture<Void> future) {
+		try {
+			future.get();
+		} catch (ExecutionException e) {
+			log.error("Process did not exit: {}", e.getCause().getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	static boolean isRunning(String pid) {
+		final String command;
+		if (SystemUtils.IS_OS_WINDOWS) {
+			command = String.format("tasklist /NH /FI \"PID eq %s\"", pid);
 		} else {
-			log.debug("Unable kill process because PID is Null or Empty!");
+			command = "ps -p " + pid;
+		}
+		try {
+			final Process p = Runtime.getRuntime().exec(command);
+			final String output = IOUtils.toString(p.getInputStream());
+			return p.waitFor() == 0 && output.contains(pid);
+		} catch (IOException e) {
+			log.error(e.getMessage(), e);
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
 		}
 	}
 
@@ -16,8 +16,8 @@
 package org.jboss.qa.jcontainer.util.executor;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.concurrent.ExecutionException;
 
 import lombok.extern.slf4j.Slf4j;
@@ -44,17 +44,39 @@ public final class ProcessBuilderExecutor {
 	}
 
 	public static Process asyncExecute(final ProcessBuilder processBuilder) throws InterruptedException, IOException {
-		return asyncExecute(processBuilder, null);
+		return asyncExecute(processBuilder, (File) null);
 	}
 
 	public static Process asyncExecute(final ProcessBuilder processBuilder, final File outAndErrFile) throws InterruptedException, IOException {
 		return buildProcessExecutor(processBuilder, outAndErrFile).asyncExecute();
 	}
 
+	/**
+	 * Output and error of process are copied into given stream, which is closed when output ends.
+	 */
+	public static Process asyncExecute(final ProcessBuilder processBuilder, final OutputStream outAndErr) throws IOException {
+		return asyncExecute(processBuilder, outAndErr, ProcessExecutor.DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Output and error of process are copied into given stream, which is closed when output ends.
+	 *
+	 * @param bufferSize size of buffer used for copying, in bytes
+	 */
+	public static Process asyncExecute(final ProcessBuilder processBuilder, final OutputStream outAndErr, int bufferSize) throws IOException {
+		return ProcessExecutor.builder().processBuilder(processBuilder)
+				.redirectError(true)
+				.outputStream(outAndErr)
+				.closeOutputStream(true)
+				.bufferSize(bufferSize)
+				.build()
+				.asyncExecute();
+	}
+
 	private static ProcessExecutor buildProcessExecutor(final ProcessBuilder processBuilder, final File outAndErrFile) throws IOException {
 		return ProcessExecutor.builder().processBuilder(processBuilder)
 				.redirectError(outAndErrFile != null)
-				.outputStream(outAndErrFile != null ? new FileOutputStream(outAndErrFile) : null)
+				.outputFile(outAndErrFile)
 				.build();
 	}
 }
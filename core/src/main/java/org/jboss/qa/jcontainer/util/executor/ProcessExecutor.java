@@ -17,20 +17,18 @@ package org.jboss.qa.jcontainer.util.executor;
 
 import org.apache.commons.lang.SystemUtils;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
-import java.nio.channels.Pipe;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import lombok.AllArgsConstructor;
@@ -43,11 +41,23 @@ import lombok.extern.slf4j.Slf4j;
 @Builder
 public class ProcessExecutor {
 
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
 	@Singular
 	private List<String> commands;
 	private OutputStream outputStream;
+	/**
+	 * Output stream is closed when output of process ends.
+	 */
+	private boolean closeOutputStream;
 	private OutputStream errorStream;
 	private boolean redirectError;
+	/**
+	 * Output is written into the file directly by operating system, no copying thread is needed.
+	 */
+	private File outputFile;
+	@Builder.Default
+	private int bufferSize = DEFAULT_BUFFER_SIZE;
 
 	private ProcessBuilder processBuilder;
 
@@ -60,7 +70,14 @@ public class ProcessExecutor {
 			processBuilder = new ProcessBuilder(commands);
 		}
 
-		if (outputStream == null) {
+		if (outputFile != null) {
+			if (SystemUtils.IS_OS_HP_UX) {
+				outputStream = new FileOutputStream(outputFile);
+				closeOutputStream = true;
+			} else {
+				processBuilder.redirectOutput(ProcessBuilder.Redirect.to(outputFile));
+			}
+		} else if (outputStream == null) {
 			if (SystemUtils.IS_OS_HP_UX) {
 				outputStream = System.out;
 			} else {
@@ -69,7 +86,7 @@ public class ProcessExecutor {
 		}
 		if (errorStream == null && !redirectError) {
 			if (SystemUtils.IS_OS_HP_UX) {
-				outputStream = System.err;
+				errorStream = System.err;
 			} else {
 				processBuilder.redirectError(ProcessBuilder.Redirect.INHERIT);
 			}
@@ -78,35 +95,37 @@ public class ProcessExecutor {
 
 		final Process process = processBuilder.start();
 
-		final ExecutorService executeService = Executors.newCachedThreadPool();
 		final List<Future> futures = new ArrayList<>();
-
 		if (outputStream != null) {
-			final Pipe pipe = Pipe.open();
-			futures.add(executeService.submit(new CopyIntoChannel(Channels.newChannel(process.getInputStream()), pipe.sink())));
-			futures.add(executeService.submit(new CopyIntoChannel(pipe.source(), Channels.newChannel(outputStream))));
+			futures.add(copy(process.getInputStream(), outputStream, closeOutputStream));
 		}
 		if (errorStream != null && !redirectError) {
-			final Pipe pipe = Pipe.open();
-			futures.add(executeService.submit(new CopyIntoChannel(Channels.newChannel(process.getErrorStream()), pipe.sink())));
-			futures.add(executeService.submit(new CopyIntoChannel(pipe.source(), Channels.newChannel(errorStream))));
+			futures.add(copy(process.getErrorStream(), errorStream, false));
 		}
+		return new ProcessWrapper(process, futures);
+	}
 
-		final Future<Integer> future = executeService.submit(new Callable<Integer>() {
+	private Future copy(InputStream source, final OutputStream sink, boolean closeSink) {
+		// Copying lasts as long as the process, so it runs on dedicated thread and not in the shared pool
+		final WritableByteChannel sinkChannel = sink instanceof FileOutputStream ? ((FileOutputStream) sink).getChannel() : Channels.newChannel(sink);
+		final CopyIntoChannel copy = new CopyIntoChannel(Channels.newChannel(source), sinkChannel, bufferSize);
+		if (!closeSink) {
+			return SharedExecutor.pump(copy);
+		}
+		return SharedExecutor.pump(new Runnable() {
 			@Override
-			public Integer call() throws Exception {
-				process.waitFor();
-				for (Future f : futures) {
-					f.get();
+			public void run() {
+				try {
+					copy.run();
+				} finally {
+					try {
+						sink.close();
+					} catch (IOException e) {
+						log.error(e.getMessage(), e);
+					}
 				}
-				return process.exitValue();
 			}
 		});
-
-		final Process proxyProcess = new ProcessWrapper(process, future);
-
-		executeService.shutdown();
-		return proxyProcess;
 	}
 
 	@Slf4j
@@ -116,7 +135,7 @@ public class ProcessExecutor {
 		public static final int EXECUTION_ERROR_RETURN_CODE = 500;
 
 		private Process process;
-		private Future<Integer> future;
+		private List<Future> futures;
 
 		@Override
 		public OutputStream getOutputStream() {
@@ -135,8 +154,13 @@ public class ProcessExecutor {
 
 		@Override
 		public int waitFor() throws InterruptedException {
+			// Waiting is done by caller thread, so no thread is occupied by process which nobody waits for
+			process.waitFor();
 			try {
-				return future.get();
+				for (Future f : futures) {
+					f.get();
+				}
+				return process.exitValue();
 			} catch (ExecutionException e) {
 				log.error(e.getMessage(), e);
 				return EXECUTION_ERROR_RETURN_CODE;
@@ -162,17 +186,20 @@ public class ProcessExecutor {
 		private ReadableByteChannel sourceChannel;
 		@NonNull
 		private WritableByteChannel sinkChannel;
+		private int bufferSize;
 
 		@Override
 		public void run() {
-			final ByteBuffer buf = ByteBuffer.allocate(48);
+			final ByteBuffer buf = ByteBuffer.allocateDirect(bufferSize);
 			try {
 				while (sourceChannel.isOpen() && sourceChannel.read(buf) != -1) {
 					buf.flip();  //make buffer ready for read
 					if (!sinkChannel.isOpen()) {
 						return;
 					}
-					sinkChannel.write(buf);
+					while (buf.hasRemaining()) {
+						sinkChannel.write(buf);
+					}
 					buf.clear(); //make buffer ready for writing
 				}
 			} catch (IOException e) {
@@ -181,14 +208,6 @@ public class ProcessExecutor {
 				} else {
 					log.error(e.getMessage(), e);
 				}
-			} finally {
-				if (sinkChannel instanceof Pipe.SinkChannel) {
-					try {
-						sinkChannel.close();
-					} catch (IOException e) {
-						log.error(e.getMessage(), e);
-					}
-				}
 			}
 		}
 	}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.util.executor;
+
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Keeps the last bytes written into it in fixed-size ring, writes do not allocate.
+ */
+public class RingBufferOutputStream extends OutputStream {
+
+	private final byte[] ring;
+	private long written;
+
+	public RingBufferOutputStream(int capacity) {
+		ring = new byte[capacity];
+	}
+
+	@Override
+	public synchronized void write(int b) {
+		ring[(int) (written++ % ring.length)] = (byte) b;
+	}
+
+	@Override
+	public synchronized void write(byte[] b, int off, int len) {
+		// Only the tail of long chunk fits
+		final int skipped = Math.max(0, len - ring.length);
+		written += skipped;
+		final int length = len - skipped;
+		final int start = (int) (written % ring.length);
+		final int first = Math.min(length, ring.length - start);
+		System.arraycopy(b, off + skipped, ring, start, first);
+		System.arraycopy(b, off + skipped + first, ring, 0, length - first);
+		written += length;
+	}
+
+	/**
+	 * Returns the last bytes in order they were written, at most capacity of buffer.
+	 */
+	public synchronized byte[] toByteArray() {
+		final int size = (int) Math.min(written, ring.length);
+		final byte[] bytes = new byte[size];
+		final int start = (int) ((written - size) % ring.length);
+		final int first = Math.min(size, ring.length - start);
+		System.arraycopy(ring, start, bytes, 0, first);
+		System.arraycopy(ring, 0, bytes, first, size - first);
+		return bytes;
+	}
+
+	public String toString(Charset charset) {
+		return new String(toByteArray(), charset);
+	}
+
+	/**
+	 * Returns number of all written bytes, including overwritten ones.
+	 */
+	public synchronized long getWritten() {
+		return written;
+	}
+
+	public synchronized void reset() {
+		written = 0;
+	}
+}
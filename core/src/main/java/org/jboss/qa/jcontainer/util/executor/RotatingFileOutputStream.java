@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.util.executor;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPOutputStream;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes into file which is rotated when it exceeds maximal size or age. Rotated file is renamed to "name.N" and
+ * compressed to "name.N.gz" on {@link SharedExecutor}, so the writing thread never waits for compression. Only
+ * the newest rotated files are kept.
+ */
+@Slf4j
+public class RotatingFileOutputStream extends OutputStream {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final File file;
+	private final long maxSize;
+	private final long maxAge;
+	private final int retention;
+	private OutputStream out;
+	private long size;
+	private long opened;
+	private int sequence;
+	// Compressions are chained, so retention never deletes file which is being compressed
+	private CompletableFuture<Void> compression = CompletableFuture.completedFuture(null);
+
+	/**
+	 * @param maxSize maximal size of file in bytes, 0 means unlimited
+	 * @param maxAge maximal age of file in milliseconds, 0 means unlimited
+	 * @param retention number of kept rotated files
+	 */
+	public RotatingFileOutputStream(File file, long maxSize, long maxAge, int retention) throws IOException {
+		this.file = file;
+		this.maxSize = maxSize;
+		this.maxAge = maxAge;
+		this.retention = retention;
+		open();
+	}
+
+	private void open() throws IOException {
+		out = new FileOutputStream(file);
+		size = 0;
+		opened = System.currentTimeMillis();
+	}
+
+	@Override
+	public synchronized void write(int b) throws IOException {
+		write(new byte[] {(byte) b}, 0, 1);
+	}
+
+	@Override
+	public synchronized void write(byte[] b, int off, int len) throws IOException {
+		if (size > 0 && ((maxSize > 0 && size + len > maxSize) || (maxAge > 0 && System.currentTimeMillis() - opened >= maxAge))) {
+			rotate();
+		}
+		out.write(b, off, len);
+		size += len;
+	}
+
+	private void rotate() throws IOException {
+		out.close();
+		final File rotated = rotatedFile(++sequence, "");
+		Files.move(file.toPath(), rotated.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		open();
+		final int rotatedSequence = sequence;
+		compression = compression.thenRunAsync(() -> {
+			compress(rotated);
+			deleteExpired(rotatedSequence - retention);
+		}, SharedExecutor::execute);
+	}
+
+	private File rotatedFile(int number, String suffix) {
+		return new File(file.getPath() + "." + number + suffix);
+	}
+
+	private static void compress(File source) {
+		final File target = new File(source.getPath() + ".gz");
+		try (InputStream in = new FileInputStream(source); OutputStream gzip = new GZIPOutputStream(new FileOutputStream(target), BUFFER_SIZE)) {
+			final byte[] buffer = new byte[BUFFER_SIZE];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				gzip.write(buffer, 0, read);
+			}
+		} catch (IOException e) {
+			log.error("File {} was not compressed", source.getName(), e);
+			return;
+		}
+		if (!source.delete()) {
+			log.warn("Compressed file {} was not deleted", source.getName());
+		}
+	}
+
+	private void deleteExpired(int number) {
+		if (number > 0) {
+			rotatedFile(number, ".gz").delete();
+			rotatedFile(number, "").delete();
+		}
+	}
+
+	/**
+	 * Returns number of rotations.
+	 */
+	public synchronized int getRotations() {
+		return sequence;
+	}
+
+	@Override
+	public synchronized void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Closes file and waits until rotated files are compressed.
+	 */
+	@Override
+	public void close() throws IOException {
+		final CompletableFuture<Void> pending;
+		synchronized (this) {
+			out.close();
+			pending = compression;
+		}
+		try {
+			pending.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+	}
+}
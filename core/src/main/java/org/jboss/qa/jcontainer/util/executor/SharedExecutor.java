@@ -0,0 +1,236 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.util.executor;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Execution service shared by all containers for pumping of process streams, waiting and shutdown work.
+ * Virtual threads are used on JDK 21+, pool of daemon threads otherwise.
+ * <p>
+ * The pool keeps at most {@value #MAX_THREADS_PROPERTY} (system property) threads, tasks are not queued behind
+ * blocked ones: when all pooled threads are busy, the task runs on dedicated thread, so tasks which wait for each other
+ * (e.g. stop waiting for shutdown hooks) do not deadlock. Streams of processes are pumped for the whole lifetime
+ * of the process, see {@link #pump(Runnable)}, so they run on dedicated threads and do not occupy the pool.
+ * Process streams are not selectable channels, so they can not be multiplexed by NIO selector.
+ * <p>
+ * Dedicated threads are limited by {@value #MAX_DEDICATED_THREADS_PROPERTY} (system property), tasks over the limit
+ * wait in queue for the first finished dedicated thread, see {@link #getQueueDepth()}.
+ */
+@Slf4j
+public final class SharedExecutor {
+
+	public static final String MAX_THREADS_PROPERTY = "jcontainer.executor.maxThreads";
+	public static final int DEFAULT_MAX_THREADS = 64;
+	public static final String MAX_DEDICATED_THREADS_PROPERTY = "jcontainer.executor.maxDedicatedThreads";
+	public static final int DEFAULT_MAX_DEDICATED_THREADS = 256;
+	private static final long KEEP_ALIVE_SECONDS = 30L;
+
+	private static final AtomicInteger RUNNING = new AtomicInteger();
+	// Threads outside of the pool, pumps and tasks which did not fit into the pool
+	private static final AtomicInteger DEDICATED = new AtomicInteger();
+	private static final int MAX_DEDICATED = Integer.getInteger(MAX_DEDICATED_THREADS_PROPERTY, DEFAULT_MAX_DEDICATED_THREADS);
+	// Tasks waiting for dedicated thread when the limit is reached
+	private static final LinkedBlockingQueue<Runnable> WAITING = new LinkedBlockingQueue<>();
+	private static final ThreadFactory DEDICATED_THREADS = new DaemonThreadFactory("jcontainer-dedicated");
+	private static final ExecutorService EXECUTOR = createExecutor();
+	private static final ScheduledExecutorService SCHEDULER = createScheduler();
+
+	private SharedExecutor() {
+	}
+
+	public static Future<?> submit(Runnable task) {
+		return submit(Executors.callable(task));
+	}
+
+	public static <T> Future<T> submit(Callable<T> task) {
+		final FutureTask<T> future = new FutureTask<>(task);
+		execute(future);
+		return future;
+	}
+
+	public static void execute(Runnable task) {
+		EXECUTOR.execute(counted(task));
+	}
+
+	/**
+	 * Executes long running task, e.g. copying of process output which lasts as long as the process,
+	 * on dedicated (or virtual) thread.
+	 */
+	public static Future<?> pump(Runnable task) {
+		final FutureTask<Object> future = new FutureTask<>(task, null);
+		if (isVirtual()) {
+			EXECUTOR.execute(counted(future));
+		} else {
+			startDedicated(counted(future));
+		}
+		return future;
+	}
+
+	private static Runnable counted(final Runnable task) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				RUNNING.incrementAndGet();
+				try {
+					task.run();
+				} finally {
+					RUNNING.decrementAndGet();
+				}
+			}
+		};
+	}
+
+	private static void startDedicated(Runnable task) {
+		WAITING.add(task);
+		startWaiting();
+	}
+
+	private static void startWaiting() {
+		while (!WAITING.isEmpty()) {
+			final int dedicated = DEDICATED.get();
+			if (dedicated >= MAX_DEDICATED) {
+				log.debug("All {} dedicated threads are busy, {} tasks wait", MAX_DEDICATED, WAITING.size());
+				return;
+			}
+			if (DEDICATED.compareAndSet(dedicated, dedicated + 1)) {
+				DEDICATED_THREADS.newThread(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							// Thread takes waiting tasks until there are none, task may be taken by other thread meanwhile
+							Runnable next;
+							while ((next = WAITING.poll()) != null) {
+								next.run();
+							}
+						} finally {
+							DEDICATED.decrementAndGet();
+							// Task added while the thread was finishing may have seen the limit reached
+							startWaiting();
+						}
+					}
+				}).start();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Executes task after delay. Scheduler thread only triggers the task, it is executed by shared executor.
+	 */
+	public static ScheduledFuture<?> schedule(final Runnable task, long delay, TimeUnit unit) {
+		return SCHEDULER.schedule(new Runnable() {
+			@Override
+			public void run() {
+				execute(task);
+			}
+		}, delay, unit);
+	}
+
+	/**
+	 * Returns number of threads which are running tasks, pooled and dedicated ones.
+	 */
+	public static int getThreadCount() {
+		return EXECUTOR instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) EXECUTOR).getPoolSize() + DEDICATED.get() : RUNNING.get();
+	}
+
+	/**
+	 * Returns number of tasks which are being executed, pumps included.
+	 */
+	public static int getRunningTasks() {
+		return RUNNING.get();
+	}
+
+	/**
+	 * Returns number of threads outside of the pool, pumps of process streams and tasks which did not fit into the pool.
+	 */
+	public static int getDedicatedThreadCount() {
+		return DEDICATED.get();
+	}
+
+	/**
+	 * Returns number of tasks which wait for free thread, i.e. tasks over the limit of dedicated threads.
+	 */
+	public static int getQueueDepth() {
+		return WAITING.size();
+	}
+
+	public static boolean isVirtual() {
+		return !(EXECUTOR instanceof ThreadPoolExecutor);
+	}
+
+	private static ExecutorService createExecutor() {
+		try {
+			// Virtual threads are available since JDK 21, project is compiled for JDK 8
+			final ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			log.debug("Virtual threads are used for container tasks");
+			return executor;
+		} catch (ReflectiveOperationException | UnsupportedOperationException e) {
+			log.trace(e.getMessage(), e);
+		}
+		final int maxThreads = Integer.getInteger(MAX_THREADS_PROPERTY, DEFAULT_MAX_THREADS);
+		// Task which is rejected by saturated pool gets its own thread instead of waiting in queue
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new SynchronousQueue<Runnable>(), new DaemonThreadFactory("jcontainer-executor"), new RejectedExecutionHandler() {
+					@Override
+					public void rejectedExecution(Runnable task, ThreadPoolExecutor pool) {
+						log.debug("All {} pooled threads are busy, task runs on dedicated thread", pool.getMaximumPoolSize());
+						startDedicated(task);
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	private static ScheduledExecutorService createScheduler() {
+		final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("jcontainer-scheduler"));
+		scheduler.setRemoveOnCancelPolicy(true);
+		return scheduler;
+	}
+
+	private static class DaemonThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger counter = new AtomicInteger();
+		private final String prefix;
+
+		DaemonThreadFactory(String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			final Thread thread = new Thread(r, prefix + "-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
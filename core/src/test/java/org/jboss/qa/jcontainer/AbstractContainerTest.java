@@ -0,0 +1,168 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.jboss.qa.jcontainer.configuration.DummyConfiguration;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+public class AbstractContainerTest {
+
+	@Test
+	public void resolvedValuesAreCachedUntilStop() throws Exception {
+		final PropertyContainer<DummyConfiguration, Client<DummyConfiguration>, User> container = new PropertyContainer<>();
+		container.running = true;
+		final Map<String, String> properties = container.getSystemProperties(Arrays.asList("a", "b"));
+		assertEquals("1", properties.get("a"));
+		assertEquals("2", properties.get("b"));
+		assertEquals("3", container.getSystemProperty("c"));
+		assertNull(container.getSystemProperty("unknown"));
+		assertEquals(new File("logs"), container.getLogDir());
+		assertEquals(new File("logs"), container.getLogDir());
+		// All properties are resolved by the first request, unknown property is not cached
+		assertEquals(2, container.propertyRequests);
+		assertEquals(1, container.logDirRequests);
+
+		container.stop();
+		container.getSystemProperty("a");
+		container.getLogDir();
+		assertEquals(3, container.propertyRequests);
+		assertEquals(2, container.logDirRequests);
+	}
+
+	@Test
+	public void valuesAreNotCachedBeforeStart() throws Exception {
+		final PropertyContainer<DummyConfiguration, Client<DummyConfiguration>, User> container = new PropertyContainer<>();
+		container.getSystemProperty("a");
+		container.getSystemProperty("a");
+		container.getLogDir();
+		container.getLogDir();
+		assertEquals(2, container.propertyRequests);
+		assertEquals(2, container.logDirRequests);
+	}
+
+	@Test
+	public void portLeaseIsReleasedWhenStartFails() throws Exception {
+		final DummyConfiguration conf = (DummyConfiguration) DummyConfiguration.builder().directory("nonexistent").logFileName("server.log")
+				.allocatePorts().build();
+		assertTrue(conf.getPortLease().isHeld());
+		try {
+			new PropertyContainer<>(conf).start();
+			fail("Container without directory was started");
+		} catch (IllegalArgumentException e) {
+			assertFalse(conf.getPortLease().isHeld());
+		}
+	}
+
+	@Test
+	public void asyncExecuteFailsWithoutClient() throws Exception {
+		final CompletableFuture<Void> result = new AsyncContainer<>(new PropertyContainer<>()).execute("cmd");
+		assertTrue(result.isCompletedExceptionally());
+		try {
+			result.get();
+			fail("Command was executed without client");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof UnsupportedOperationException);
+		}
+	}
+
+	private static class PropertyContainer<T extends DummyConfiguration, U extends Client<T>, V extends User>
+			extends AbstractContainer<T, U, V> {
+
+		private boolean running;
+		private int propertyRequests;
+		private int logDirRequests;
+
+		PropertyContainer() {
+			this((T) DummyConfiguration.builder().logFileName("server.log").build());
+		}
+
+		PropertyContainer(T configuration) {
+			super(configuration);
+		}
+
+		@Override
+		protected U createClient(T configuration) {
+			return (U) new Client<T>(configuration) {
+				@Override
+				public boolean isConnected() {
+					return false;
+				}
+
+				@Override
+				protected void connectInternal() {
+				}
+
+				@Override
+				protected void executeInternal(String command) {
+				}
+
+				@Override
+				protected void executeInternal(List<String> commands) {
+				}
+
+				@Override
+				protected void closeInternal() {
+				}
+			};
+		}
+
+		@Override
+		public boolean isRunning() {
+			return running;
+		}
+
+		@Override
+		public void addUser(V user) {
+		}
+
+		@Override
+		protected String getBasicCommand() {
+			return null;
+		}
+
+		@Override
+		protected File getLogDirInternal() {
+			logDirRequests++;
+			return new File("logs");
+		}
+
+		@Override
+		protected Map<String, String> resolveSystemProperties(Collection<String> names) {
+			propertyRequests++;
+			final Map<String, String> properties = new HashMap<>();
+			properties.put("a", "1");
+			properties.put("b", "2");
+			properties.put("c", "3");
+			return properties;
+		}
+	}
+}
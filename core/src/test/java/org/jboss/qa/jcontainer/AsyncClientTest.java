@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+public class AsyncClientTest {
+
+	@Rule
+	public Timeout globalTimeout = Timeout.seconds(5);
+
+	@Test
+	public void commandsAreExecutedInOrder() throws Exception {
+		final RecordingClient client = new RecordingClient();
+		final AsyncClient asyncClient = new AsyncClient(client);
+		final List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			futures.add(asyncClient.execute("cmd" + i));
+		}
+		futures.add(asyncClient.execute(Arrays.asList("a", "b")));
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).get();
+		assertEquals(22, client.executed.size());
+		for (int i = 0; i < 20; i++) {
+			assertEquals("cmd" + i, client.executed.get(i));
+		}
+		assertEquals("b", client.executed.get(21));
+	}
+
+	@Test
+	public void failureDoesNotStopQueue() throws Exception {
+		final RecordingClient client = new RecordingClient();
+		final AsyncClient asyncClient = new AsyncClient(client);
+		final CompletableFuture<Void> failed = asyncClient.execute("fail");
+		final CompletableFuture<Void> next = asyncClient.execute("next");
+		try {
+			failed.get();
+			fail("Command should fail");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalArgumentException);
+		}
+		next.get();
+		assertEquals(Arrays.asList("fail", "next"), client.executed);
+	}
+
+	private static class RecordingClient extends Client<Configuration> {
+
+		private final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+
+		RecordingClient() {
+			super(null);
+		}
+
+		@Override
+		public boolean isConnected() {
+			return true;
+		}
+
+		@Override
+		protected void connectInternal() {
+		}
+
+		@Override
+		protected void executeInternal(String command) {
+			executed.add(command);
+			if ("fail".equals(command)) {
+				throw new IllegalArgumentException("Command failed");
+			}
+		}
+
+		@Override
+		protected void executeInternal(List<String> commands) {
+			executed.addAll(commands);
+		}
+
+		@Override
+		protected void closeInternal() throws IOException {
+		}
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.IOException;
+import java.util.Map;
+
+public class ContainerGroupTest {
+
+	private static final long BOOT_TIME = 500L;
+
+	@Rule
+	public Timeout globalTimeout = Timeout.seconds(10);
+
+	@Test
+	public void independentContainersAreStartedConcurrently() throws Exception {
+		final FakeContainer first = new FakeContainer(BOOT_TIME, false);
+		final FakeContainer second = new FakeContainer(BOOT_TIME, false);
+		final FakeContainer third = new FakeContainer(BOOT_TIME, false);
+		try (ContainerGroup group = new ContainerGroup().add(first).add(second).add(third)) {
+			final long start = System.currentTimeMillis();
+			final Map<Container<?, ?, ?>, Long> times = group.start();
+			assertTrue("Containers were started sequentially", System.currentTimeMillis() - start < 3 * BOOT_TIME);
+			assertEquals(3, times.size());
+			assertTrue(first.isRunning() && second.isRunning() && third.isRunning());
+		}
+		assertFalse(first.isRunning() || second.isRunning() || third.isRunning());
+	}
+
+	@Test
+	public void dependencyIsStartedFirstAndStoppedLast() throws Exception {
+		final FakeContainer db = new FakeContainer(BOOT_TIME, false);
+		final FakeContainer app = new FakeContainer(0, false);
+		final ContainerGroup group = new ContainerGroup().add(db).add(app, db);
+		group.start();
+		assertTrue(app.startedAt >= db.startedAt);
+		group.stop();
+		assertTrue(db.stoppedAt >= app.stoppedAt);
+	}
+
+	@Test
+	public void failFast() throws Exception {
+		final FakeContainer broken = new FakeContainer(0, true);
+		final FakeContainer dependent = new FakeContainer(0, false);
+		final ContainerGroup group = new ContainerGroup().add(broken).add(dependent, broken);
+		try {
+			group.start();
+			fail("Start of group should fail");
+		} catch (IllegalStateException e) {
+			assertEquals("Broken container", e.getMessage());
+		}
+		assertFalse(dependent.isRunning());
+		group.stop();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void dependencyMustBeAddedFirst() {
+		new ContainerGroup().add(new FakeContainer(0, false), new FakeContainer(0, false));
+	}
+
+	private static class FakeContainer implements Container<Configuration, Client<Configuration>, User> {
+
+		private final long bootTime;
+		private final boolean broken;
+		private volatile boolean running;
+		private volatile long startedAt;
+		private volatile long stoppedAt;
+
+		FakeContainer(long bootTime, boolean broken) {
+			this.bootTime = bootTime;
+			this.broken = broken;
+		}
+
+		@Override
+		public synchronized void start() throws Exception {
+			if (broken) {
+				throw new IllegalStateException("Broken container");
+			}
+			Thread.sleep(bootTime);
+			startedAt = System.currentTimeMillis();
+			running = true;
+		}
+
+		@Override
+		public synchronized void stop() throws Exception {
+			Thread.sleep(bootTime / 10);
+			stoppedAt = System.currentTimeMillis();
+			running = false;
+		}
+
+		@Override
+		public boolean isRunning() {
+			return running;
+		}
+
+		@Override
+		public Configuration getConfiguration() {
+			return null;
+		}
+
+		@Override
+		public void addUser(User user) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean isClientSupported() {
+			return false;
+		}
+
+		@Override
+		public Client<Configuration> getClient() {
+			return null;
+		}
+
+		@Override
+		public void close() throws IOException {
+			running = false;
+		}
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class ContainerPoolTest {
+
+	@Rule
+	public Timeout globalTimeout = Timeout.seconds(10);
+
+	private final List<FakeContainer> created = new ArrayList<>();
+	private volatile Callable<?> beforeCreate;
+
+	private final ContainerPool.Factory<FakeContainer> factory = new ContainerPool.Factory<FakeContainer>() {
+		@Override
+		public FakeContainer create() throws Exception {
+			if (beforeCreate != null) {
+				beforeCreate.call();
+			}
+			final FakeContainer container = new FakeContainer();
+			synchronized (created) {
+				created.add(container);
+			}
+			return container;
+		}
+	};
+
+	@Test
+	public void containersArePreStarted() throws Exception {
+		try (ContainerPool<FakeContainer> pool = new ContainerPool<>(2, factory, null)) {
+			pool.start();
+			assertEquals(2, pool.getIdleCount());
+			assertTrue(created.get(0).isRunning() && created.get(1).isRunning());
+		}
+		assertFalse(created.get(0).isRunning() || created.get(1).isRunning());
+	}
+
+	@Test
+	public void returnedContainerIsReset() throws Exception {
+		final ContainerPool.Reset<FakeContainer> reset = new ContainerPool.Reset<FakeContainer>() {
+			@Override
+			public boolean reset(FakeContainer container) {
+				return true;
+			}
+		};
+		try (ContainerPool<FakeContainer> pool = new ContainerPool<>(1, factory, reset)) {
+			pool.start();
+			final FakeContainer container = pool.lease(1, TimeUnit.SECONDS);
+			assertEquals(1, pool.getLeasedCount());
+			pool.release(container);
+			assertSame(container, pool.lease(1, TimeUnit.SECONDS));
+			assertEquals(1, pool.getResetCount());
+			assertEquals(0, pool.getRecycleCount());
+			assertEquals(2, pool.getLeaseCount());
+		}
+	}
+
+	@Test
+	public void returnedContainerIsRecycled() throws Exception {
+		try (ContainerPool<FakeContainer> pool = new ContainerPool<>(1, factory, null)) {
+			pool.start();
+			final FakeContainer container = pool.lease(1, TimeUnit.SECONDS);
+			pool.release(container);
+			final FakeContainer recycled = pool.lease(1, TimeUnit.SECONDS);
+			assertNotSame(container, recycled);
+			assertFalse(container.isRunning());
+			assertTrue(recycled.isRunning());
+			assertEquals(1, pool.getRecycleCount());
+		}
+	}
+
+	@Test
+	public void failedRecycleIsRetried() throws Exception {
+		try (ContainerPool<FakeContainer> pool = new ContainerPool<>(1, factory, null)) {
+			pool.start();
+			beforeCreate = new Callable<Object>() {
+				@Override
+				public Object call() {
+					beforeCreate = null;
+					throw new IllegalStateException("Factory failure");
+				}
+			};
+			pool.release(pool.lease(1, TimeUnit.SECONDS));
+			while (!pool.isDegraded()) {
+				Thread.sleep(10);
+			}
+			assertEquals(1, pool.getMissingCount());
+			assertTrue(pool.lease(8, TimeUnit.SECONDS).isRunning());
+			assertEquals(0, pool.getMissingCount());
+		}
+	}
+
+	@Test
+	public void containerStartedAfterCloseIsStopped() throws Exception {
+		final ContainerPool<FakeContainer> pool = new ContainerPool<>(1, factory, null);
+		pool.start();
+		beforeCreate = new Callable<Object>() {
+			@Override
+			public Object call() throws IOException {
+				pool.close();
+				return null;
+			}
+		};
+		pool.release(pool.lease(1, TimeUnit.SECONDS));
+		while (created.size() < 2 || created.get(1).isRunning() || !created.get(1).wasStarted()) {
+			Thread.sleep(10);
+		}
+		assertFalse(pool.isDegraded());
+		assertEquals(0, pool.getIdleCount());
+	}
+
+	@Test(expected = TimeoutException.class)
+	public void leaseTimeout() throws Exception {
+		try (ContainerPool<FakeContainer> pool = new ContainerPool<>(1, factory, null)) {
+			pool.start();
+			pool.lease(1, TimeUnit.SECONDS);
+			pool.lease(100, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private static class FakeContainer implements Container<Configuration, Client<Configuration>, User> {
+
+		private volatile boolean running;
+		private volatile boolean started;
+
+		@Override
+		public void start() {
+			running = true;
+			started = true;
+		}
+
+		boolean wasStarted() {
+			return started;
+		}
+
+		@Override
+		public void stop() {
+			running = false;
+		}
+
+		@Override
+		public boolean isRunning() {
+			return running;
+		}
+
+		@Override
+		public Configuration getConfiguration() {
+			return null;
+		}
+
+		@Override
+		public void addUser(User user) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean isClientSupported() {
+			return false;
+		}
+
+		@Override
+		public Client<Configuration> getClient() {
+			return null;
+		}
+
+		@Override
+		public void close() throws IOException {
+			running = false;
+		}
+	}
+}
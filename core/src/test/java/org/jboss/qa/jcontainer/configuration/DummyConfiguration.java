@@ -23,14 +23,18 @@ import java.util.List;
 public class DummyConfiguration extends JavaConfiguration {
 
 	public static final String JAVA_OPTS_ENV_NAME = "DUMMY_OPTS";
+	public static final int DEFAULT_PORT = 8080;
+
+	private final int busyPort;
 
 	protected DummyConfiguration(Builder<?> builder) {
 		super(builder);
+		busyPort = builder.busyPort;
 	}
 
 	@Override
 	public int getBusyPort() {
-		return 0;
+		return busyPort;
 	}
 
 	@Override
@@ -43,6 +47,14 @@ public class DummyConfiguration extends JavaConfiguration {
 	}
 
 	public abstract static class Builder<T extends Builder<T>> extends JavaConfiguration.Builder<T> {
+
+		private int busyPort;
+
+		public T busyPort(int busyPort) {
+			this.busyPort = busyPort;
+			return self();
+		}
+
 		@Override
 		protected String javaOptsEnvName() {
 			return JAVA_OPTS_ENV_NAME;
@@ -50,6 +62,7 @@ public class DummyConfiguration extends JavaConfiguration {
 
 		@Override
 		public JavaConfiguration build() {
+			allocatePortLease(DEFAULT_PORT);
 			return new DummyConfiguration(this);
 		}
 	}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.readiness;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.io.FileUtils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.Timeout;
+
+import java.io.File;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+public class ReadinessWaiterTest {
+
+	private static final Pattern MARKER = Pattern.compile("WFLYSRV0025");
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Rule
+	public Timeout globalTimeout = Timeout.seconds(5);
+
+	@Test
+	public void logMarkerIgnoresPreviousContent() throws Exception {
+		final File file = temporaryFolder.newFile();
+		FileUtils.writeStringToFile(file, "WFLYSRV0025: previous run\n");
+		final LogMarkerReadinessCheck check = new LogMarkerReadinessCheck(file, MARKER);
+		assertFalse(check.isReady());
+		FileUtils.writeStringToFile(file, "Booting\nWFLYSRV0", true);
+		assertFalse(check.isReady());
+		FileUtils.writeStringToFile(file, "025: started\n", true);
+		assertTrue(check.isReady());
+	}
+
+	@Test
+	public void logMarkerAfterTruncate() throws Exception {
+		final File file = temporaryFolder.newFile();
+		FileUtils.writeStringToFile(file, "long content of previous run\n");
+		final LogMarkerReadinessCheck check = new LogMarkerReadinessCheck(file, MARKER);
+		FileUtils.writeStringToFile(file, "WFLYSRV0025\n");
+		assertTrue(check.isReady());
+	}
+
+	@Test
+	public void firstReadyCheckWins() throws Exception {
+		final ReadinessCheck never = new ReadinessCheck() {
+			@Override
+			public boolean isReady() throws Exception {
+				throw new IllegalStateException("Not ready");
+			}
+		};
+		final ReadinessCheck ready = new ReadinessCheck() {
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+		};
+		assertSame(ready, ReadinessWaiter.builder().check(never).check(ready).timeout(1000).build().await());
+	}
+
+	@Test(expected = TimeoutException.class)
+	public void timeout() throws Exception {
+		final ReadinessCheck never = new ReadinessCheck() {
+			@Override
+			public boolean isReady() {
+				return false;
+			}
+		};
+		ReadinessWaiter.builder().check(never).timeout(200).build().await();
+	}
+
+	@Test
+	public void asyncAwait() throws Exception {
+		final AtomicInteger polls = new AtomicInteger();
+		final ReadinessCheck third = new ReadinessCheck() {
+			@Override
+			public boolean isReady() {
+				return polls.incrementAndGet() == 3;
+			}
+		};
+		assertSame(third, ReadinessWaiter.builder().check(third).timeout(1000).build().awaitAsync().get());
+		assertEquals(3, polls.get());
+	}
+
+	@Test
+	public void asyncTimeout() throws Exception {
+		final ReadinessCheck never = new ReadinessCheck() {
+			@Override
+			public boolean isReady() {
+				return false;
+			}
+		};
+		try {
+			ReadinessWaiter.builder().check(never).timeout(200).build().awaitAsync().get();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+			return;
+		}
+		throw new AssertionError("Timeout was expected");
+	}
+}
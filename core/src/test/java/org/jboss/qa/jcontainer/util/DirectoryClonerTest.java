@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.util;
+
+import static org.apache.commons.io.FileUtils.readFileToString;
+import static org.apache.commons.io.FileUtils.writeStringToFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class DirectoryClonerTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void immutableFilesAreLinked() throws Exception {
+		final File source = createDistribution();
+		final File target = new File(temporaryFolder.getRoot(), "clone");
+		final DirectoryCloner.Result result = DirectoryCloner.clone(source, target,
+				Arrays.asList("configuration"), Arrays.asList("log"));
+
+		assertTrue(Files.isSameFile(new File(source, "modules/module.jar").toPath(), new File(target, "modules/module.jar").toPath()));
+		assertFalse(Files.isSameFile(new File(source, "configuration/standalone.xml").toPath(),
+				new File(target, "configuration/standalone.xml").toPath()));
+		assertEquals("<server/>", readFileToString(new File(target, "configuration/standalone.xml")));
+		assertTrue(new File(target, "log").isDirectory());
+		assertEquals(0, new File(target, "log").list().length);
+		assertEquals(1, result.getCopiedFiles());
+		assertEquals(2, result.getLinkedFiles());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void targetMustBeEmpty() throws Exception {
+		final File target = temporaryFolder.newFolder();
+		writeStringToFile(new File(target, "file"), "content");
+		DirectoryCloner.clone(createDistribution(), target, Collections.<String>emptyList(), Collections.<String>emptyList());
+	}
+
+	private File createDistribution() throws Exception {
+		final File source = temporaryFolder.newFolder();
+		writeStringToFile(new File(source, "modules/module.jar"), "module");
+		writeStringToFile(new File(source, "bin/run.sh"), "run");
+		writeStringToFile(new File(source, "configuration/standalone.xml"), "<server/>");
+		writeStringToFile(new File(source, "log/server.log"), "old log");
+		return source;
+	}
+}
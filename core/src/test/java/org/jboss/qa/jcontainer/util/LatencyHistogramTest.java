@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void percentiles() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 99; i++) {
+			histogram.record(10);
+		}
+		histogram.record(1000);
+
+		assertEquals(100, histogram.getCount());
+		assertEquals(1000, histogram.getMax());
+		assertEquals(19, histogram.getMean());
+		assertEquals(16, histogram.getPercentile(50));
+		assertEquals(16, histogram.getPercentile(99));
+		assertEquals(1000, histogram.getPercentile(100));
+	}
+
+	@Test
+	public void empty() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMean());
+		assertEquals(0, histogram.getPercentile(99));
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.util;
+
+import static org.apache.commons.io.FileUtils.writeStringToFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class LogIndexTest {
+
+	private static final int BLOCK_LINES = 100;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void findErrorsBetweenMinutes() throws Exception {
+		final File file = temporaryFolder.newFile("server.log");
+		final List<String> expected = new ArrayList<>();
+		writeStringToFile(file, generate(0, 3000, expected));
+		final LogIndex index = new LogIndex(file, StandardCharsets.UTF_8, BLOCK_LINES).update();
+		assertEquals(3000, index.getLineCount());
+		assertEquals(expected, index.find(LogIndex.Level.ERROR, LocalTime.of(10, 1), LocalTime.of(10, 3)));
+		assertEquals(500, index.find(null, LocalTime.of(10, 2), LocalTime.of(10, 2)).size());
+		assertTrue(index.find(LogIndex.Level.ERROR, LocalTime.of(11, 0), LocalTime.of(12, 0)).isEmpty());
+	}
+
+	@Test
+	public void linesBeforeOffset() throws Exception {
+		final File file = temporaryFolder.newFile("server.log");
+		writeStringToFile(file, generate(0, 1000, new ArrayList<String>()));
+		final LogIndex index = new LogIndex(file, StandardCharsets.UTF_8, BLOCK_LINES).update();
+		final List<String> lines = index.linesBefore(index.getIndexedLength(), 250);
+		assertEquals(250, lines.size());
+		assertEquals(line(750), lines.get(0));
+		assertEquals(line(999), lines.get(249));
+		assertEquals(Arrays.asList(line(0)), index.linesBefore(line(0).length() + 1, 10));
+	}
+
+	@Test
+	public void updateIndexesAppendedLines() throws Exception {
+		final File file = temporaryFolder.newFile("server.log");
+		final List<String> expected = new ArrayList<>();
+		writeStringToFile(file, generate(0, 1000, expected) + "10:04:00,000 ERROR incomplete");
+		final LogIndex index = new LogIndex(file, StandardCharsets.UTF_8, BLOCK_LINES).update();
+		assertEquals(1000, index.getLineCount());
+		writeStringToFile(file, " line\n" + generate(1000, 2000, expected), true);
+		index.update();
+		assertEquals(2001, index.getLineCount());
+		assertEquals(Arrays.asList("10:04:00,000 ERROR incomplete line"),
+				index.find(LogIndex.Level.ERROR, LocalTime.of(10, 4), LocalTime.of(10, 4)));
+		assertEquals(expected, index.find(LogIndex.Level.ERROR, LocalTime.of(10, 1), LocalTime.of(10, 3)));
+	}
+
+	@Test
+	public void indexIsLoadedFromSideFile() throws Exception {
+		final File file = temporaryFolder.newFile("server.log");
+		final List<String> expected = new ArrayList<>();
+		writeStringToFile(file, generate(0, 3000, expected));
+		new LogIndex(file, StandardCharsets.UTF_8, BLOCK_LINES).update();
+		assertTrue(new File(file.getPath() + LogIndex.INDEX_SUFFIX).exists());
+		final LogIndex loaded = new LogIndex(file, StandardCharsets.UTF_8, BLOCK_LINES).update();
+		assertEquals(3000, loaded.getLineCount());
+		assertEquals(expected, loaded.find(LogIndex.Level.ERROR, LocalTime.of(10, 1), LocalTime.of(10, 3)));
+	}
+
+	@Test
+	public void replacedFileIsReindexed() throws Exception {
+		final File file = temporaryFolder.newFile("server.log");
+		writeStringToFile(file, generate(0, 1000, new ArrayList<String>()));
+		final LogIndex index = new LogIndex(file, StandardCharsets.UTF_8, BLOCK_LINES).update();
+		writeStringToFile(file, "09:00:00,000 SEVERE other run\n" + generate(0, 1000, new ArrayList<String>()));
+		index.update();
+		assertEquals(1001, index.getLineCount());
+		assertEquals(Arrays.asList("09:00:00,000 SEVERE other run"),
+				index.find(LogIndex.Level.ERROR, LocalTime.of(9, 0), LocalTime.of(9, 59)));
+	}
+
+	@Test
+	public void fileRewrittenWithSameBeginningIsReindexed() throws Exception {
+		final File file = temporaryFolder.newFile("server.log");
+		writeStringToFile(file, generate(0, 1000, new ArrayList<String>()));
+		final LogIndex index = new LogIndex(file, StandardCharsets.UTF_8, BLOCK_LINES).update();
+		writeStringToFile(file, generate(0, 500, new ArrayList<String>()) + "10:05:00,000 ERROR rewritten\n"
+				+ generate(500, 1000, new ArrayList<String>()));
+		index.update();
+		assertEquals(1001, index.getLineCount());
+		assertEquals(Arrays.asList("10:05:00,000 ERROR rewritten"), index.find(LogIndex.Level.ERROR, LocalTime.of(10, 5), LocalTime.of(10, 5)));
+	}
+
+	/**
+	 * Generates lines, 500 lines per minute since 10:00, every 97th line is ERROR with stack trace line.
+	 */
+	private static String generate(int from, int to, List<String> errors) {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = from; i < to; i++) {
+			final String line = line(i);
+			sb.append(line).append('\n');
+			final int minute = i / 500;
+			if (line.contains("ERROR") && minute >= 1 && minute <= 3) {
+				errors.add(line);
+			}
+		}
+		return sb.toString();
+	}
+
+	private static String line(int i) {
+		if (i % 97 == 96) {
+			return "\tat org.jboss.Failing.method(Failing.java:" + i + ")";
+		}
+		return String.format("10:%02d:%02d,000 %s [org.jboss.Logger] message %d", i / 500, i % 60, i % 97 == 95 ? "ERROR" : "INFO", i);
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.util;
+
+import static org.apache.commons.io.FileUtils.writeStringToFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+public class LogTailTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void onlyAppendedLinesAreRead() throws Exception {
+		final File file = temporaryFolder.newFile("server.log");
+		writeStringToFile(file, "previous\n");
+		final LogTail tail = LogTail.fromEnd(file);
+		assertEquals(Collections.emptyList(), tail.readLines());
+		writeStringToFile(file, "first\nsec", true);
+		assertEquals(Arrays.asList("first"), tail.readLines());
+		writeStringToFile(file, "ond\r\n", true);
+		assertEquals(Arrays.asList("second"), tail.readLines());
+		assertEquals(Arrays.asList("previous", "first", "second"), LogTail.fromStart(file).readLines());
+	}
+
+	@Test
+	public void findLeavesFollowingLines() throws Exception {
+		final File file = temporaryFolder.newFile("server.log");
+		final LogTail tail = LogTail.fromEnd(file);
+		writeStringToFile(file, "one\nERROR two\nthree\n");
+		assertEquals("ERROR two", tail.find(Pattern.compile("ERROR")));
+		assertNull(tail.find(Pattern.compile("ERROR")));
+		writeStringToFile(file, "four\n", true);
+		tail.mark();
+		writeStringToFile(file, "five\n", true);
+		assertEquals(Arrays.asList("five"), tail.readLines());
+	}
+
+	@Test
+	public void findStopsAtFirstMatch() throws Exception {
+		final File file = temporaryFolder.newFile("server.log");
+		final LogTail tail = LogTail.fromEnd(file);
+		final StringBuilder content = new StringBuilder("ERROR first\n");
+		for (int i = 0; i < 20000; i++) {
+			content.append("line ").append(i).append('\n');
+		}
+		writeStringToFile(file, content.append("ERROR last\n").toString());
+		assertEquals("ERROR first", tail.find(Pattern.compile("ERROR")));
+		final List<String> lines = tail.readLines();
+		assertEquals(20001, lines.size());
+		assertEquals("line 0", lines.get(0));
+		assertEquals("ERROR last", lines.get(20000));
+	}
+
+	@Test
+	public void truncatedFileIsReadFromStart() throws Exception {
+		final File file = temporaryFolder.newFile("catalina.out");
+		writeStringToFile(file, "long content of previous run\n");
+		final LogTail tail = LogTail.fromEnd(file);
+		writeStringToFile(file, "new\n");
+		assertEquals(Arrays.asList("new"), tail.readLines());
+	}
+
+	@Test
+	public void renamedFileIsFinished() throws Exception {
+		final File file = temporaryFolder.newFile("server.log");
+		final LogTail tail = LogTail.fromEnd(file);
+		writeStringToFile(file, "before\n");
+		assertEquals(Arrays.asList("before"), tail.readLines());
+		writeStringToFile(file, "last\n", true);
+		final File rotated = new File(temporaryFolder.getRoot(), "server.log.2026-10-17");
+		if (!file.renameTo(rotated)) {
+			throw new IllegalStateException("File was not renamed");
+		}
+		writeStringToFile(file, "after\n");
+		assertEquals(Arrays.asList("last", "after"), tail.readLines());
+	}
+
+	@Test
+	public void nextFileOfSupplierIsFollowed() throws Exception {
+		final File first = temporaryFolder.newFile("catalina.2026-10-17.log");
+		final AtomicReference<File> current = new AtomicReference<>(first);
+		final LogTail tail = new LogTail(current::get, StandardCharsets.UTF_8, false);
+		writeStringToFile(first, "today\n");
+		final File second = new File(temporaryFolder.getRoot(), "catalina.2026-10-18.log");
+		writeStringToFile(second, "tomorrow\n");
+		current.set(second);
+		assertEquals(Arrays.asList("today", "tomorrow"), tail.readLines());
+	}
+
+	@Test
+	public void awaitAppendedLine() throws Exception {
+		final File file = temporaryFolder.newFile("karaf.log");
+		final LogTail tail = LogTail.fromEnd(file);
+		final Thread writer = new Thread(() -> {
+			try {
+				Thread.sleep(100);
+				writeStringToFile(file, "Bundle started\n", true);
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		writer.start();
+		assertEquals("Bundle started", tail.await(Pattern.compile("started"), 5, TimeUnit.SECONDS));
+		writer.join();
+	}
+
+	@Test(expected = TimeoutException.class)
+	public void awaitTimeout() throws Exception {
+		final File file = temporaryFolder.newFile("karaf.log");
+		writeStringToFile(file, "Bundle started\n");
+		LogTail.fromEnd(file).await(Pattern.compile("started"), 200, TimeUnit.MILLISECONDS);
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class PortAllocatorTest {
+
+	private static final int HTTP_PORT = 8080;
+	private static final int THREADS = 8;
+
+	@Test
+	public void concurrentAllocationsDoNotOverlap() throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		final List<Future<PortAllocator.Lease>> futures = new ArrayList<>();
+		for (int i = 0; i < THREADS; i++) {
+			futures.add(executor.submit(new Callable<PortAllocator.Lease>() {
+				@Override
+				public PortAllocator.Lease call() {
+					return PortAllocator.allocate(HTTP_PORT);
+				}
+			}));
+		}
+		final Set<Integer> offsets = new HashSet<>();
+		try {
+			for (Future<PortAllocator.Lease> future : futures) {
+				assertTrue("Offset was allocated twice", offsets.add(future.get().getOffset()));
+			}
+		} finally {
+			for (Future<PortAllocator.Lease> future : futures) {
+				future.get().release();
+			}
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void releasedSlotCanBeAcquiredAgain() {
+		final PortAllocator.Lease lease = PortAllocator.allocate(HTTP_PORT);
+		final PortAllocator.Lease other = PortAllocator.allocate(HTTP_PORT);
+		try {
+			assertNotEquals(lease.getSlot(), other.getSlot());
+			lease.release();
+			assertFalse(lease.isHeld());
+			lease.acquire();
+			assertTrue(lease.isHeld());
+		} finally {
+			lease.release();
+			other.release();
+		}
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.util;
+
+import static org.apache.commons.io.FileUtils.getFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.concurrent.TimeUnit;
+
+public class ProcessDiscoveryTest {
+
+	private static final long CONTAINER_ID = 4321;
+
+	@Rule
+	public Timeout globalTimeout = Timeout.seconds(10);
+
+	@BeforeClass
+	public static void setUp() {
+		Assume.assumeTrue(ProcessDiscovery.isSupported());
+	}
+
+	@Test
+	public void findContainerProcessAndWaitForExit() throws Exception {
+		final Process process = new ProcessBuilder("/bin/sh", getFile("src", "test", "resources", "scriptLoop.sh").getAbsolutePath(),
+				"-Djcontainer.id=" + CONTAINER_ID).start();
+		try {
+			TimeUnit.SECONDS.sleep(1);
+			final String pid = ProcessDiscovery.getJavaPidByContainerId(CONTAINER_ID);
+			assertNotNull("Process of container should be found", pid);
+			assertTrue(ProcessDiscovery.isAlive(pid));
+			assertEquals(pid, ProcessDiscovery.getJavaPidByContainerId(CONTAINER_ID));
+			assertNotNull(ProcessDiscovery.getParentPid(pid));
+		} finally {
+			process.destroy();
+		}
+		ProcessDiscovery.onContainerExit(CONTAINER_ID).get(5, TimeUnit.SECONDS);
+		assertNull(ProcessDiscovery.getJavaPidByContainerId(CONTAINER_ID));
+	}
+}
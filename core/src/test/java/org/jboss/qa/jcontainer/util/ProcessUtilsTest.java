@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.util;
+
+import static org.apache.commons.io.FileUtils.getFile;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.lang3.SystemUtils;
+
+import org.jboss.qa.jcontainer.Configuration;
+import org.jboss.qa.jcontainer.configuration.DummyConfiguration;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class ProcessUtilsTest {
+
+	private static final int COUNT = 3;
+	private static final long FIRST_CONTAINER_ID = 5000;
+
+	@Rule
+	public Timeout globalTimeout = Timeout.seconds(10);
+
+	@BeforeClass
+	public static void setUp() {
+		Assume.assumeFalse(SystemUtils.IS_OS_WINDOWS);
+	}
+
+	@Test
+	public void killWaitsUntilPortIsFree() throws Exception {
+		final int port = freePort();
+		final long id = FIRST_CONTAINER_ID + COUNT;
+		final Process process = startPortHolder(id, port);
+		final Configuration configuration = DummyConfiguration.builder().logFileName("server.log").busyPort(port).build();
+		final CompletableFuture<Boolean> freeOnCompletion = ProcessUtils.killAsync(ProcessUtils.getJavaPidByContainerId(id), configuration, 5, TimeUnit.SECONDS)
+				.thenApply(v -> isFree(port));
+		assertTrue(freeOnCompletion.get(5, TimeUnit.SECONDS));
+		process.waitFor();
+	}
+
+	@Test
+	public void killDoesNotCompleteWhilePortIsBusy() throws Exception {
+		final long id = FIRST_CONTAINER_ID + COUNT + 1;
+		final Process process = startPortHolder(id, freePort());
+		// Busy port of container is held by other process than the killed one
+		try (ServerSocket socket = new ServerSocket(0)) {
+			final Configuration configuration = DummyConfiguration.builder().logFileName("server.log").busyPort(socket.getLocalPort()).build();
+			final CompletableFuture<Void> killed = ProcessUtils.killAsync(ProcessUtils.getJavaPidByContainerId(id), configuration, 5, TimeUnit.SECONDS);
+			process.waitFor();
+			TimeUnit.MILLISECONDS.sleep(500);
+			assertFalse(killed.isDone());
+			socket.close();
+			killed.get(5, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test
+	public void killConcurrently() throws Exception {
+		final List<Process> processes = new ArrayList<>();
+		for (int i = 0; i < COUNT; i++) {
+			processes.add(new ProcessBuilder("/bin/sh", getFile("src", "test", "resources", "scriptLoop.sh").getAbsolutePath(),
+					"-Djcontainer.id=" + (FIRST_CONTAINER_ID + i)).start());
+		}
+		TimeUnit.SECONDS.sleep(1);
+		final List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (int i = 0; i < COUNT; i++) {
+			final String pid = ProcessUtils.getJavaPidByContainerId(FIRST_CONTAINER_ID + i);
+			assertNotNull(pid);
+			futures.add(ProcessUtils.killAsync(pid));
+		}
+		for (Process process : processes) {
+			process.waitFor();
+		}
+		// Much less than KILL_TIMEOUT of each process
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).get(5, TimeUnit.SECONDS);
+		for (int i = 0; i < COUNT; i++) {
+			assertNull(ProcessUtils.getJavaPidByContainerId(FIRST_CONTAINER_ID + i));
+		}
+	}
+
+	private static Process startPortHolder(long id, int port) throws Exception {
+		final Process process = new ProcessBuilder(new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath(),
+				"-Djcontainer.id=" + id, "-cp", System.getProperty("java.class.path"), PortHolder.class.getName(), String.valueOf(port)).start();
+		while (isFree(port)) {
+			TimeUnit.MILLISECONDS.sleep(50);
+		}
+		return process;
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+	private static boolean isFree(int port) {
+		try (Socket socket = new Socket("localhost", port)) {
+			return false;
+		} catch (IOException e) {
+			return true;
+		}
+	}
+
+	/**
+	 * Process which holds server socket until it is killed.
+	 */
+	public static final class PortHolder {
+
+		private PortHolder() {
+		}
+
+		public static void main(String[] args) throws Exception {
+			try (ServerSocket socket = new ServerSocket(Integer.parseInt(args[0]))) {
+				Thread.sleep(Long.MAX_VALUE);
+			}
+		}
+	}
+}
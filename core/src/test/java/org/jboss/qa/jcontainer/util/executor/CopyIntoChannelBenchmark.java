@@ -0,0 +1,170 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.util.executor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.Pipe;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of console capture into stdout log file. Every operation copies {@link #SIZE_MB} MB,
+ * so MB/s = ops/s * {@link #SIZE_MB}, {@link #main(String[])} prints it for every mode.
+ * <ul>
+ *     <li>{@code legacy} - original implementation (48 B heap buffer, intermediate pipe, two threads and
+ *     {@link Channels#newChannel(java.io.OutputStream)} of file output stream)</li>
+ *     <li>{@code direct} - large direct buffer written straight into file channel</li>
+ *     <li>{@code transfer} - {@link FileChannel#transferFrom(ReadableByteChannel, long, long)}</li>
+ * </ul>
+ * Run: {@code java -cp target/test-classes:<test classpath> org.jboss.qa.jcontainer.util.executor.CopyIntoChannelBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CopyIntoChannelBenchmark {
+
+	public static final int SIZE_MB = 16;
+	private static final int LEGACY_BUFFER_SIZE = 48;
+
+	@Param({"legacy", "direct", "transfer"})
+	private String mode;
+
+	private byte[] data;
+	private File file;
+	private ExecutorService executor;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		data = new byte[SIZE_MB * 1024 * 1024];
+		new Random(0).nextBytes(data);
+		file = File.createTempFile("stdout-", ".log");
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		executor.shutdownNow();
+		file.delete();
+	}
+
+	@Benchmark
+	public long copy() throws Exception {
+		final ReadableByteChannel source = Channels.newChannel(new ByteArrayInputStream(data));
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			final FileChannel sink = out.getChannel();
+			switch (mode) {
+				case "legacy":
+					final Pipe pipe = Pipe.open();
+					final Future<?> in = executor.submit(new LegacyCopyIntoChannel(source, pipe.sink()));
+					final Future<?> outFuture = executor.submit(new LegacyCopyIntoChannel(pipe.source(), Channels.newChannel(out)));
+					in.get();
+					outFuture.get();
+					break;
+				case "direct":
+					new ProcessExecutor.CopyIntoChannel(source, sink, ProcessExecutor.DEFAULT_BUFFER_SIZE).run();
+					break;
+				case "transfer":
+					long position = 0;
+					long transferred;
+					while ((transferred = sink.transferFrom(source, position, Long.MAX_VALUE)) > 0) {
+						position += transferred;
+					}
+					break;
+				default:
+					throw new IllegalArgumentException(mode);
+			}
+			return sink.size();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		final Collection<RunResult> results = new Runner(new OptionsBuilder().include(CopyIntoChannelBenchmark.class.getSimpleName()).build()).run();
+		for (RunResult result : results) {
+			System.out.printf("%-10s %10.1f MB/s%n", result.getParams().getParam("mode"), result.getPrimaryResult().getScore() * SIZE_MB);
+		}
+	}
+
+	/**
+	 * Copy loop of the original implementation.
+	 */
+	private static class LegacyCopyIntoChannel implements Runnable {
+
+		private final ReadableByteChannel sourceChannel;
+		private final WritableByteChannel sinkChannel;
+
+		LegacyCopyIntoChannel(ReadableByteChannel sourceChannel, WritableByteChannel sinkChannel) {
+			this.sourceChannel = sourceChannel;
+			this.sinkChannel = sinkChannel;
+		}
+
+		@Override
+		public void run() {
+			final ByteBuffer buf = ByteBuffer.allocate(LEGACY_BUFFER_SIZE);
+			try {
+				while (sourceChannel.isOpen() && sourceChannel.read(buf) != -1) {
+					buf.flip();
+					if (!sinkChannel.isOpen()) {
+						return;
+					}
+					sinkChannel.write(buf);
+					buf.clear();
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			} finally {
+				if (sinkChannel instanceof Pipe.SinkChannel) {
+					try {
+						sinkChannel.close();
+					} catch (IOException e) {
+						throw new IllegalStateException(e);
+					}
+				}
+			}
+		}
+	}
+}
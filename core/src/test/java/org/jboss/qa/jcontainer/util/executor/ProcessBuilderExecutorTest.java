@@ -25,6 +25,7 @@ import org.apache.commons.io.FileUtils;
 
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 
 import lombok.extern.slf4j.Slf4j;
@@ -64,4 +65,23 @@ public class ProcessBuilderExecutorTest extends AbstractProcessBuilderExecutorTe
 		log.debug("File content: {}", fileContent);
 		assertThat(fileContent, is(equalToIgnoringWhiteSpace(EXPECTED_RESULT)));
 	}
+
+	@Test
+	public void asyncExecuteWithRotatingOutput() throws Exception {
+		final File file = temporaryFolder.newFile();
+		final RotatingFileOutputStream out = new RotatingFileOutputStream(file, 1024, 0, 1);
+		final Process process = ProcessBuilderExecutor.asyncExecute(createProcessBuilder(), out);
+		assertEquals("Response code should be 0. ", 0, process.waitFor());
+		final String fileContent = FileUtils.readFileToString(file);
+		log.debug("File content: {}", fileContent);
+		assertThat(fileContent, is(equalToIgnoringWhiteSpace(EXPECTED_RESULT)));
+	}
+
+	@Test
+	public void asyncExecuteWithSmallCopyBuffer() throws Exception {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final Process process = ProcessBuilderExecutor.asyncExecute(createProcessBuilder(), out, 4);
+		assertEquals("Response code should be 0. ", 0, process.waitFor());
+		assertEquals(EXPECTED_RESULT, out.toString());
+	}
 }
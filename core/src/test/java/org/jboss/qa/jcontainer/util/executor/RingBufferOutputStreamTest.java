@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.util.executor;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class RingBufferOutputStreamTest {
+
+	@Test
+	public void lastBytesAreKept() throws Exception {
+		final RingBufferOutputStream ring = new RingBufferOutputStream(8);
+		ring.write(bytes("abc"));
+		assertEquals("abc", ring.toString(StandardCharsets.UTF_8));
+		ring.write(bytes("defgh"));
+		assertEquals("abcdefgh", ring.toString(StandardCharsets.UTF_8));
+		ring.write(bytes("ijk"));
+		ring.write('l');
+		assertEquals("efghijkl", ring.toString(StandardCharsets.UTF_8));
+		assertEquals(12, ring.getWritten());
+	}
+
+	@Test
+	public void longChunkOverwritesWholeBuffer() throws Exception {
+		final RingBufferOutputStream ring = new RingBufferOutputStream(4);
+		ring.write(bytes("ab"));
+		ring.write(bytes("0123456789"), 1, 8);
+		assertEquals("5678", ring.toString(StandardCharsets.UTF_8));
+		ring.write(bytes("xy"));
+		assertEquals("78xy", ring.toString(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void resetClearsContent() throws Exception {
+		final RingBufferOutputStream ring = new RingBufferOutputStream(4);
+		ring.write(bytes("abcdef"));
+		ring.reset();
+		assertEquals("", ring.toString(StandardCharsets.UTF_8));
+		ring.write(bytes("g"));
+		assertEquals("g", ring.toString(StandardCharsets.UTF_8));
+	}
+
+	private static byte[] bytes(String s) {
+		return s.getBytes(StandardCharsets.UTF_8);
+	}
+}
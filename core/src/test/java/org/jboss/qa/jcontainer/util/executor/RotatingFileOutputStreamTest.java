@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.util.executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+public class RotatingFileOutputStreamTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void rotatedBySize() throws Exception {
+		final File file = new File(temporaryFolder.getRoot(), "stdout.log");
+		try (RotatingFileOutputStream out = new RotatingFileOutputStream(file, 10, 0, 2)) {
+			for (int i = 0; i < 5; i++) {
+				out.write(String.format("line %d\\n", i).getBytes(StandardCharsets.UTF_8));
+			}
+			assertEquals(4, out.getRotations());
+		}
+		assertEquals("line 4\\n", FileUtils.readFileToString(file));
+		assertEquals("line 3\\n", readCompressed(new File(file.getPath() + ".4.gz")));
+		assertEquals("line 2\\n", readCompressed(new File(file.getPath() + ".3.gz")));
+		assertFalse(new File(file.getPath() + ".2.gz").exists());
+		assertFalse(new File(file.getPath() + ".4").exists());
+		assertEquals(3, temporaryFolder.getRoot().list().length);
+	}
+
+	@Test
+	public void rotatedByAge() throws Exception {
+		final File file = new File(temporaryFolder.getRoot(), "stdout.log");
+		try (RotatingFileOutputStream out = new RotatingFileOutputStream(file, 0, 50, 5)) {
+			out.write("first\\n".getBytes(StandardCharsets.UTF_8));
+			out.write("second\\n".getBytes(StandardCharsets.UTF_8));
+			Thread.sleep(100);
+			out.write("third\\n".getBytes(StandardCharsets.UTF_8));
+		}
+		assertEquals("third\\n", FileUtils.readFileToString(file));
+		assertEquals("first\\nsecond\\n", readCompressed(new File(file.getPath() + ".1.gz")));
+	}
+
+	@Test
+	public void emptyFileIsNotRotated() throws Exception {
+		final File file = new File(temporaryFolder.getRoot(), "stdout.log");
+		try (RotatingFileOutputStream out = new RotatingFileOutputStream(file, 4, 0, 5)) {
+			out.write("long line\\n".getBytes(StandardCharsets.UTF_8));
+			assertEquals(0, out.getRotations());
+		}
+		assertTrue(file.exists());
+	}
+
+	private static String readCompressed(File file) throws Exception {
+		try (InputStream in = new GZIPInputStream(new FileInputStream(file))) {
+			return IOUtils.toString(in, "UTF-8");
+		}
+	}
+}
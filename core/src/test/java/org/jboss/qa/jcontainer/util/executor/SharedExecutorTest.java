@@ -0,0 +1,153 @@
+/*
+ * Copyright 2015 Red Hat Inc. and/or its affiliates and other contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.qa.jcontainer.util.executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class SharedExecutorTest {
+
+	@Rule
+	public Timeout globalTimeout = Timeout.seconds(5);
+
+	@Test
+	public void runningTasksAreCounted() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Future<?> future = SharedExecutor.submit(new Runnable() {
+			@Override
+			public void run() {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		started.await();
+		assertTrue(SharedExecutor.getRunningTasks() >= 1);
+		assertTrue(SharedExecutor.getThreadCount() >= 1);
+		release.countDown();
+		future.get();
+	}
+
+	@Test
+	public void saturatedPoolDoesNotQueueBlockedTasks() throws Exception {
+		// Every task waits for the last one, queued tasks would never be started
+		final int tasks = SharedExecutor.DEFAULT_MAX_THREADS + 10;
+		final CountDownLatch release = new CountDownLatch(tasks);
+		final List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < tasks; i++) {
+			futures.add(SharedExecutor.submit(new Runnable() {
+				@Override
+				public void run() {
+					release.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+	}
+
+	@Test
+	public void tasksOverDedicatedLimitWait() throws Exception {
+		if (SharedExecutor.isVirtual()) {
+			return;
+		}
+		final int blocked = Integer.getInteger(SharedExecutor.MAX_THREADS_PROPERTY, SharedExecutor.DEFAULT_MAX_THREADS)
+				+ Integer.getInteger(SharedExecutor.MAX_DEDICATED_THREADS_PROPERTY, SharedExecutor.DEFAULT_MAX_DEDICATED_THREADS);
+		final CountDownLatch started = new CountDownLatch(blocked);
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < blocked; i++) {
+			futures.add(SharedExecutor.submit(new Runnable() {
+				@Override
+				public void run() {
+					started.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}));
+		}
+		started.await();
+		final Future<?> waiting = SharedExecutor.submit(new Runnable() {
+			@Override
+			public void run() {
+			}
+		});
+		assertTrue(SharedExecutor.getQueueDepth() >= 1);
+		assertFalse(waiting.isDone());
+		release.countDown();
+		waiting.get();
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		assertEquals(0, SharedExecutor.getQueueDepth());
+	}
+
+	@Test
+	public void pumpRunsOnDedicatedThread() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final Future<?> future = SharedExecutor.pump(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		if (!SharedExecutor.isVirtual()) {
+			assertTrue(SharedExecutor.getDedicatedThreadCount() >= 1);
+		}
+		release.countDown();
+		future.get();
+	}
+
+	@Test
+	public void scheduledTaskIsExecuted() throws Exception {
+		final CountDownLatch executed = new CountDownLatch(1);
+		SharedExecutor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				executed.countDown();
+			}
+		}, 10, TimeUnit.MILLISECONDS);
+		assertTrue(executed.await(1, TimeUnit.SECONDS));
+	}
+}